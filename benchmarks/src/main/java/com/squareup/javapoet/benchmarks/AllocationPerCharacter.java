@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet.benchmarks;
+
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeSpec;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measures the bytes allocated per character of rendered output. JMH's GC profiler reports bytes
+ * per operation, which can't be compared across files of different sizes; this normalizes by the
+ * output length instead. Output is written to a presized {@link StringBuilder} so that only
+ * JavaPoet's own allocations are counted.
+ *
+ * <p>This uses HotSpot's per-thread allocation counter and must run on a JVM that supports it.
+ */
+public final class AllocationPerCharacter {
+  private static final int WARMUP_ITERATIONS = 200;
+  private static final int MEASUREMENT_ITERATIONS = 200;
+
+  private AllocationPerCharacter() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+
+    Map<String, JavaFile> files = new LinkedHashMap<>();
+    files.put("statements", Fixtures.javaFile(1, 10, 500));
+    files.put("nested", Fixtures.javaFile(8, 10, 20));
+    files.put("javadoc", javadocFile());
+
+    System.out.printf("%-12s %12s %16s%n", "file", "characters", "bytes/character");
+    for (Map.Entry<String, JavaFile> entry : files.entrySet()) {
+      JavaFile javaFile = entry.getValue();
+      StringBuilder out = new StringBuilder(javaFile.toString().length());
+      for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+        out.setLength(0);
+        javaFile.writeTo(out);
+      }
+
+      long before = threads.getThreadAllocatedBytes(threadId);
+      for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+        out.setLength(0);
+        javaFile.writeTo(out);
+      }
+      long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+      double bytesPerCharacter = (double) allocated / MEASUREMENT_ITERATIONS / out.length();
+      System.out.printf("%-12s %12d %16.3f%n", entry.getKey(), out.length(), bytesPerCharacter);
+    }
+  }
+
+  /** Returns a file that is mostly multi-line Javadoc and comments. */
+  private static JavaFile javadocFile() {
+    TypeSpec.Builder type = TypeSpec.classBuilder("Documented")
+        .addJavadoc("A type with a lot of documentation.\n\n<p>Every member is documented too.\n");
+    for (int i = 0; i < 200; i++) {
+      type.addMethod(MethodSpec.methodBuilder("method" + i)
+          .addJavadoc("Does thing number $L.\n\n<p>This line is here to make the comment\n"
+              + "span several lines, like real documentation does.\n\n@return nothing\n", i)
+          .addComment("An implementation comment that\nalso spans lines.")
+          .addStatement("int value = $L", i)
+          .build());
+    }
+    return JavaFile.builder(Fixtures.PACKAGE_NAME, type.build()).build();
+  }
+}
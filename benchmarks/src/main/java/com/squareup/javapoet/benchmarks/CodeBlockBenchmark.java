@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet.benchmarks;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Builds code blocks, which covers format string parsing and argument conversion. */
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class CodeBlockBenchmark {
+  private static final ClassName HASH_MAP = ClassName.get("java.util", "HashMap");
+
+  @Param({"1", "100"})
+  int statements;
+
+  @Benchmark public CodeBlock addStatement() {
+    CodeBlock.Builder builder = CodeBlock.builder();
+    for (int i = 0; i < statements; i++) {
+      builder.addStatement("$T $N = new $T($S, $L)", HASH_MAP, "map", HASH_MAP, "name", i);
+    }
+    return builder.build();
+  }
+
+  @Benchmark public CodeBlock addIndexed() {
+    CodeBlock.Builder builder = CodeBlock.builder();
+    for (int i = 0; i < statements; i++) {
+      builder.add("$1T $2N = new $1T($3S);\n", HASH_MAP, "map", "name");
+    }
+    return builder.build();
+  }
+
+  @Benchmark public CodeBlock addLargeMethodBody() {
+    return Fixtures.codeBlock(0, statements);
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet.benchmarks;
+
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeSpec;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares and hashes equal but distinct spec instances, as happens when specs are used as keys
+ * in generation caches.
+ */
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class EqualsHashCodeBenchmark {
+  @Param({"1", "4"})
+  int depth;
+
+  @Param({"20"})
+  int statementsPerMethod;
+
+  TypeSpec typeSpec;
+  TypeSpec otherTypeSpec;
+  MethodSpec methodSpec;
+  MethodSpec otherMethodSpec;
+  CodeBlock codeBlock;
+  CodeBlock otherCodeBlock;
+
+  @Setup public void setUp() {
+    typeSpec = Fixtures.nestedType("Generated", depth, 10, statementsPerMethod, false);
+    otherTypeSpec = Fixtures.nestedType("Generated", depth, 10, statementsPerMethod, false);
+    methodSpec = Fixtures.method("method", 0, statementsPerMethod);
+    otherMethodSpec = Fixtures.method("method", 0, statementsPerMethod);
+    codeBlock = Fixtures.codeBlock(0, statementsPerMethod);
+    otherCodeBlock = Fixtures.codeBlock(0, statementsPerMethod);
+  }
+
+  @Benchmark public boolean typeSpecEquals() {
+    return typeSpec.equals(otherTypeSpec);
+  }
+
+  @Benchmark public int typeSpecHashCode() {
+    return typeSpec.hashCode();
+  }
+
+  @Benchmark public boolean methodSpecEquals() {
+    return methodSpec.equals(otherMethodSpec);
+  }
+
+  @Benchmark public int methodSpecHashCode() {
+    return methodSpec.hashCode();
+  }
+
+  @Benchmark public boolean codeBlockEquals() {
+    return codeBlock.equals(otherCodeBlock);
+  }
+
+  @Benchmark public int codeBlockHashCode() {
+    return codeBlock.hashCode();
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet.benchmarks;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
+import com.squareup.javapoet.WildcardTypeName;
+import java.util.ArrayList;
+import java.util.List;
+import javax.lang.model.element.Modifier;
+
+/**
+ * Spec graphs shaped like real generated code: many imported types, deeply nested member types,
+ * and large method bodies. Every factory is deterministic so repeated calls build equal specs.
+ */
+final class Fixtures {
+  private Fixtures() {
+  }
+
+  static final String PACKAGE_NAME = "com.example.generated";
+
+  /** Types from many packages so that the rendered file has a long import list. */
+  static final List<ClassName> IMPORTED_TYPES = new ArrayList<>();
+  static {
+    String[] packages = {
+        "java.util", "java.util.concurrent", "java.io", "java.nio", "java.net", "java.math",
+        "javax.inject", "com.example.model", "com.example.service", "com.example.util",
+    };
+    String[] simpleNames = {
+        "Alpha", "Bravo", "Charlie", "Delta", "Echo", "Foxtrot", "Golf", "Hotel",
+    };
+    for (String packageName : packages) {
+      String lastSegment = packageName.substring(packageName.lastIndexOf('.') + 1);
+      String prefix = Character.toUpperCase(lastSegment.charAt(0)) + lastSegment.substring(1);
+      for (String simpleName : simpleNames) {
+        IMPORTED_TYPES.add(ClassName.get(packageName, prefix + simpleName));
+      }
+    }
+    // A few colliding simple names to exercise the fully-qualified fallback.
+    IMPORTED_TYPES.add(ClassName.get("com.example.a", "Entry"));
+    IMPORTED_TYPES.add(ClassName.get("com.example.b", "Entry"));
+    IMPORTED_TYPES.add(ClassName.get("java.util", "Map", "Entry"));
+  }
+
+  static final ClassName LIST = ClassName.get("java.util", "List");
+  static final ClassName MAP = ClassName.get("java.util", "Map");
+  static final ClassName NULLABLE = ClassName.get("javax.annotation", "Nullable");
+  static final ClassName GENERATED = ClassName.get("javax.annotation", "Generated");
+
+  /** Returns a file containing a type nested {@code depth} levels deep. */
+  static JavaFile javaFile(int depth, int methodsPerType, int statementsPerMethod) {
+    TypeSpec type = nestedType("Generated", depth, methodsPerType, statementsPerMethod, false);
+    return JavaFile.builder(PACKAGE_NAME, type)
+        .addFileComment("Generated code. Do not edit!")
+        .addStaticImport(ClassName.get("java.util", "Collections"), "emptyList", "singletonList")
+        .build();
+  }
+
+  static TypeSpec nestedType(String name, int depth, int methodsPerType, int statementsPerMethod,
+      boolean nested) {
+    TypeSpec.Builder builder = TypeSpec.classBuilder(name)
+        .addJavadoc("Generated type {@code $L} at depth $L.\n", name, depth)
+        .addAnnotation(AnnotationSpec.builder(GENERATED)
+            .addMember("value", "$S", "com.example.Processor")
+            .build())
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .addTypeVariable(TypeVariableName.get("T", ClassName.get(Comparable.class)));
+
+    if (nested) {
+      builder.addModifiers(Modifier.STATIC);
+    }
+
+    for (int i = 0; i < IMPORTED_TYPES.size(); i += 4) {
+      ClassName fieldType = IMPORTED_TYPES.get(i);
+      builder.addField(FieldSpec.builder(fieldType, "field" + i, Modifier.PRIVATE, Modifier.FINAL)
+          .addAnnotation(NULLABLE)
+          .build());
+    }
+
+    for (int i = 0; i < methodsPerType; i++) {
+      builder.addMethod(method("method" + i, i, statementsPerMethod));
+    }
+
+    if (depth > 1) {
+      builder.addType(nestedType(name + "Level" + (depth - 1), depth - 1, methodsPerType,
+          statementsPerMethod, true));
+    }
+    return builder.build();
+  }
+
+  static MethodSpec method(String name, int seed, int statements) {
+    TypeName returnType = ParameterizedTypeName.get(MAP,
+        IMPORTED_TYPES.get(seed % IMPORTED_TYPES.size()),
+        ParameterizedTypeName.get(LIST, WildcardTypeName.subtypeOf(Number.class)));
+    return MethodSpec.methodBuilder(name)
+        .addJavadoc("Computes the $L result.\n\n@param input the value to process.\n", name)
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC)
+        .returns(returnType)
+        .addParameter(ParameterizedTypeName.get(LIST, TypeVariableName.get("T")), "input")
+        .addException(ClassName.get("java.io", "IOException"))
+        .addCode(codeBlock(seed, statements))
+        .build();
+  }
+
+  /** Returns a method body with {@code statements} statements using every placeholder type. */
+  static CodeBlock codeBlock(int seed, int statements) {
+    CodeBlock.Builder builder = CodeBlock.builder();
+    builder.addStatement("$T result = new $T<>()", MAP, ClassName.get("java.util", "HashMap"));
+    for (int i = 0; i < statements; i++) {
+      ClassName type = IMPORTED_TYPES.get((seed + i) % IMPORTED_TYPES.size());
+      switch (i % 4) {
+        case 0:
+          builder.addStatement("$T $N = new $T($S, $L)", type, "local" + i, type, "value " + i, i);
+          break;
+        case 1:
+          builder.beginControlFlow("if ($N != null && input.size() > $L)", "local" + (i - 1), i)
+              .addStatement("result.put($S, $T.valueOf($L))", "key" + i, Integer.class, i)
+              .endControlFlow();
+          break;
+        case 2:
+          builder.beginControlFlow("for ($T item : input)", Object.class)
+              .addStatement("$T.requireNonNull(item, $S)", ClassName.get("java.util", "Objects"),
+                  "item == null")
+              .endControlFlow();
+          break;
+        default:
+          builder.add("// Line $L of a long, wrapped statement.\n", i)
+              .addStatement("$T.singletonList($S)\n.iterator()\n.next()",
+                  ClassName.get("java.util", "Collections"), "wrapped " + i);
+          break;
+      }
+    }
+    builder.addStatement("return result");
+    return builder.build();
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet.benchmarks;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeNameInterner;
+import com.squareup.javapoet.TypeSpec;
+import java.util.ArrayList;
+import java.util.List;
+import javax.lang.model.element.Modifier;
+
+/**
+ * Reports how much heap a large spec graph retains with and without a {@link TypeNameInterner}.
+ * The graph's fields, parameters and return types use the same few parameterized types over and
+ * over, each created anew as a code generator would.
+ */
+public final class InternerHeapSavings {
+  private static final int TYPES = 200;
+  private static final int MEMBERS_PER_TYPE = 100;
+
+  private static final ClassName LIST = ClassName.get("java.util", "List");
+  private static final ClassName MAP = ClassName.get("java.util", "Map");
+  private static final ClassName PROVIDER = ClassName.get("javax.inject", "Provider");
+
+  private InternerHeapSavings() {
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    long plain = retainedBytes(null);
+    long interned = retainedBytes(new TypeNameInterner());
+    System.out.printf("spec graph: %d types with %d members each%n", TYPES, MEMBERS_PER_TYPE);
+    System.out.printf("without interning: %,d bytes%n", plain);
+    System.out.printf("with interning:    %,d bytes%n", interned);
+    System.out.printf("saved:             %,d bytes (%.1f%%)%n",
+        plain - interned, 100.0 * (plain - interned) / plain);
+  }
+
+  private static long retainedBytes(TypeNameInterner interner) throws InterruptedException {
+    long before = usedHeap();
+    List<TypeSpec> graph = graph(interner);
+    long after = usedHeap();
+    if (graph.size() != TYPES) throw new AssertionError();
+    return after - before;
+  }
+
+  private static List<TypeSpec> graph(TypeNameInterner interner) {
+    List<TypeSpec> result = new ArrayList<>();
+    for (int t = 0; t < TYPES; t++) {
+      TypeSpec.Builder type = TypeSpec.classBuilder("Type" + t);
+      for (int m = 0; m < MEMBERS_PER_TYPE; m++) {
+        ClassName element = Fixtures.IMPORTED_TYPES.get(m % Fixtures.IMPORTED_TYPES.size());
+        type.addField(FieldSpec.builder(
+            type(interner, ParameterizedTypeName.get(PROVIDER, ClassName.get(
+                element.packageName(), element.simpleName()))), "field" + m,
+            Modifier.PRIVATE, Modifier.FINAL).build());
+        type.addMethod(MethodSpec.methodBuilder("method" + m)
+            .returns(type(interner, ParameterizedTypeName.get(LIST, ClassName.get(String.class))))
+            .addParameter(type(interner, ParameterizedTypeName.get(MAP,
+                ClassName.get(String.class), ClassName.get(element.packageName(),
+                    element.simpleName()))), "map")
+            .build());
+      }
+      result.add(type.build());
+    }
+    return result;
+  }
+
+  private static TypeName type(TypeNameInterner interner, TypeName typeName) {
+    return interner != null ? interner.intern(typeName) : typeName;
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
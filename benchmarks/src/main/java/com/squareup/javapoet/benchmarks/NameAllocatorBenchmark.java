@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet.benchmarks;
+
+import com.squareup.javapoet.NameAllocator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Allocates many names, with and without collisions. */
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class NameAllocatorBenchmark {
+  @Param({"10", "1000"})
+  int names;
+
+  @Benchmark public NameAllocator distinctNames() {
+    NameAllocator nameAllocator = new NameAllocator();
+    for (int i = 0; i < names; i++) {
+      nameAllocator.newName("name" + i);
+    }
+    return nameAllocator;
+  }
+
+  @Benchmark public NameAllocator collidingNames() {
+    NameAllocator nameAllocator = new NameAllocator();
+    for (int i = 0; i < names; i++) {
+      nameAllocator.newName("value");
+    }
+    return nameAllocator;
+  }
+
+  @Benchmark public NameAllocator taggedNames() {
+    NameAllocator nameAllocator = new NameAllocator();
+    for (int i = 0; i < names; i++) {
+      nameAllocator.newName("value", i);
+    }
+    return nameAllocator;
+  }
+}
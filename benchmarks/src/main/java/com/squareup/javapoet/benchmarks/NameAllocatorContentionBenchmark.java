@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet.benchmarks;
+
+import com.squareup.javapoet.ConcurrentNameAllocator;
+import com.squareup.javapoet.NameAllocator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Allocates tagged names from one allocator shared by every benchmark thread, as when the members
+ * of one type are generated in parallel. Compares a {@link NameAllocator} behind a lock with a
+ * {@link ConcurrentNameAllocator}. Every fourth name collides with another thread's.
+ *
+ * <p>Run {@link #main} to measure with 1, 2, 4, 8, 16 and 32 threads.
+ */
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class NameAllocatorContentionBenchmark {
+  private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32};
+
+  /**
+   * A thread's own names never collide with each other. Its shared names collide once with each
+   * other thread's, so suffixes stay short however long an iteration runs.
+   */
+  @State(Scope.Thread)
+  public static class ThreadState {
+    private static final AtomicInteger threadIds = new AtomicInteger();
+
+    final int threadId = threadIds.getAndIncrement();
+    int count;
+
+    String nextSuggestion() {
+      int i = count++;
+      return i % 4 == 0 ? "shared" + i : "member" + threadId + "_" + i;
+    }
+
+    Object nextTag() {
+      return (long) threadId << 32 | count;
+    }
+  }
+
+  NameAllocator lockedNameAllocator;
+  ConcurrentNameAllocator concurrentNameAllocator;
+
+  @Setup(Level.Iteration) public void setUp() {
+    lockedNameAllocator = new NameAllocator();
+    concurrentNameAllocator = new ConcurrentNameAllocator();
+  }
+
+  @Benchmark public String locked(ThreadState threadState) {
+    Object tag = threadState.nextTag();
+    String suggestion = threadState.nextSuggestion();
+    synchronized (lockedNameAllocator) {
+      return lockedNameAllocator.newName(suggestion, tag);
+    }
+  }
+
+  @Benchmark public String concurrent(ThreadState threadState) {
+    Object tag = threadState.nextTag();
+    String suggestion = threadState.nextSuggestion();
+    return concurrentNameAllocator.newName(suggestion, tag);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    for (int threads : THREAD_COUNTS) {
+      Options options = new OptionsBuilder()
+          .include(NameAllocatorContentionBenchmark.class.getSimpleName())
+          .threads(threads)
+          .build();
+      new Runner(options).run();
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet.benchmarks;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import java.util.ArrayList;
+import java.util.List;
+import javax.lang.model.element.Modifier;
+
+/**
+ * Reports the heap retained by a graph of about a million specs shaped like an annotation
+ * processor's output: many small types whose fields and methods have no javadoc, few annotations
+ * and one or two modifiers. Type names are shared so that only the specs themselves are measured.
+ */
+public final class SpecFootprint {
+  private static final int TYPES = 6_600;
+  private static final int FIELDS_PER_TYPE = 50;
+  private static final int METHODS_PER_TYPE = 50;
+  /** Each method has one parameter, so every method counts as two specs. */
+  private static final int SPEC_COUNT =
+      TYPES * (1 + FIELDS_PER_TYPE + 2 * METHODS_PER_TYPE);
+
+  private SpecFootprint() {
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    long before = usedHeap();
+    List<TypeSpec> graph = graph();
+    long after = usedHeap();
+    if (graph.size() != TYPES) throw new AssertionError();
+    System.out.printf("spec graph: %,d specs%n", SPEC_COUNT);
+    System.out.printf("retained:   %,d bytes%n", after - before);
+    System.out.printf("per spec:   %.1f bytes%n", (double) (after - before) / SPEC_COUNT);
+  }
+
+  private static List<TypeSpec> graph() {
+    List<TypeSpec> result = new ArrayList<>();
+    List<ClassName> types = Fixtures.IMPORTED_TYPES;
+    for (int t = 0; t < TYPES; t++) {
+      TypeSpec.Builder type = TypeSpec.classBuilder("Type" + t)
+          .addModifiers(Modifier.PUBLIC, Modifier.FINAL);
+      for (int f = 0; f < FIELDS_PER_TYPE; f++) {
+        type.addField(FieldSpec.builder(types.get(f % types.size()), "field" + f,
+            Modifier.PRIVATE).build());
+      }
+      for (int m = 0; m < METHODS_PER_TYPE; m++) {
+        type.addMethod(MethodSpec.methodBuilder("method" + m)
+            .addModifiers(Modifier.PUBLIC)
+            .returns(TypeName.INT)
+            .addParameter(ParameterSpec.builder(types.get(m % types.size()), "value").build())
+            .build());
+      }
+      result.add(type.build());
+    }
+    return result;
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet.benchmarks;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.TypeName;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Converts reflection types and strings into type names. */
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class TypeNameBenchmark {
+  /** Holds generic field types for reflection. */
+  static final class Holder<T extends Comparable<T>> {
+    Map<String, List<? extends Number>> parameterized;
+    Map.Entry<T, T[]>[] genericArray;
+  }
+
+  Type parameterizedType;
+  Type genericArrayType;
+
+  @Setup public void setUp() throws NoSuchFieldException {
+    parameterizedType = Holder.class.getDeclaredField("parameterized").getGenericType();
+    genericArrayType = Holder.class.getDeclaredField("genericArray").getGenericType();
+  }
+
+  @Benchmark public TypeName getClassType() {
+    return TypeName.get(Map.Entry.class);
+  }
+
+  @Benchmark public TypeName getPrimitiveArrayType() {
+    return TypeName.get(int[][].class);
+  }
+
+  @Benchmark public TypeName getParameterizedType() {
+    return TypeName.get(parameterizedType);
+  }
+
+  @Benchmark public TypeName getGenericArrayType() {
+    return TypeName.get(genericArrayType);
+  }
+
+  @Benchmark public ClassName getClassName() {
+    return ClassName.get(Map.Entry.class);
+  }
+
+  @Benchmark public ClassName bestGuessTopLevel() {
+    return ClassName.bestGuess("java.util.concurrent.ConcurrentHashMap");
+  }
+
+  @Benchmark public ClassName bestGuessNested() {
+    return ClassName.bestGuess("com.example.generated.Outer.Middle.Inner");
+  }
+}
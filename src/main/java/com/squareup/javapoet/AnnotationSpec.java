@@ -45,6 +45,9 @@ public final class AnnotationSpec {
   public final TypeName type;
   public final Map<String, List<CodeBlock>> members;
 
+  /** Lazily computed hash code, or 0 if it hasn't been computed yet. */
+  private int hashCode;
+
   private AnnotationSpec(Builder builder) {
     this.type = builder.type;
     this.members = Util.immutableMultimap(builder.members);
@@ -177,11 +180,20 @@ public final class AnnotationSpec {
     if (this == o) return true;
     if (o == null) return false;
     if (getClass() != o.getClass()) return false;
-    return toString().equals(o.toString());
+    AnnotationSpec that = (AnnotationSpec) o;
+    if (hashCode != 0 && that.hashCode != 0 && hashCode != that.hashCode) return false;
+    return type.equals(that.type)
+        && Util.equalsInOrder(members, that.members);
   }
 
   @Override public int hashCode() {
-    return toString().hashCode();
+    int result = hashCode;
+    if (result == 0) {
+      result = type.hashCode();
+      result = 31 * result + members.hashCode();
+      hashCode = result;
+    }
+    return result;
   }
 
   @Override public String toString() {
@@ -47,6 +47,14 @@ public final class ArrayTypeName extends TypeName {
     return new ArrayTypeName(componentType);
   }
 
+  @Override boolean equalsIgnoringAnnotations(TypeName that) {
+    return componentType.equals(((ArrayTypeName) that).componentType);
+  }
+
+  @Override int hashCodeIgnoringAnnotations() {
+    return componentType.hashCode() + 1;
+  }
+
   @Override CodeWriter emit(CodeWriter out) throws IOException {
     return out.emit("$T[]", componentType);
   }
@@ -63,17 +71,17 @@ public final class ArrayTypeName extends TypeName {
 
   /** Returns an array type equivalent to {@code mirror}. */
   public static ArrayTypeName get(ArrayType mirror) {
-    return get(mirror, new LinkedHashMap<TypeParameterElement, TypeVariableName>());
+    return get(mirror, new LinkedHashMap<TypeParameterElement, TypeVariableName>(), null);
   }
 
-  static ArrayTypeName get(
-      ArrayType mirror, Map<TypeParameterElement, TypeVariableName> typeVariables) {
-    return new ArrayTypeName(get(mirror.getComponentType(), typeVariables));
+  static ArrayTypeName get(ArrayType mirror,
+      Map<TypeParameterElement, TypeVariableName> typeVariables, TypeNames cache) {
+    return new ArrayTypeName(get(mirror.getComponentType(), typeVariables, cache));
   }
 
   /** Returns an array type equivalent to {@code type}. */
   public static ArrayTypeName get(GenericArrayType type) {
-    return get(type, new LinkedHashMap<Type, TypeVariableName>());
+    return (ArrayTypeName) GenericTypeCache.get(type);
   }
 
   static ArrayTypeName get(GenericArrayType type, Map<Type, TypeVariableName> map) {
@@ -33,6 +33,16 @@ import static javax.lang.model.element.NestingKind.TOP_LEVEL;
 
 /** A fully-qualified class name for top-level and member classes. */
 public final class ClassName extends TypeName implements Comparable<ClassName> {
+  /**
+   * Class names keyed by class. Values hold only strings, so caching them doesn't keep classes or
+   * their class loaders from being unloaded. This must be initialized before {@link #OBJECT}.
+   */
+  private static final ClassValue<ClassName> CLASS_NAMES = new ClassValue<ClassName>() {
+    @Override protected ClassName computeValue(Class<?> type) {
+      return compute(type);
+    }
+  };
+
   public static final ClassName OBJECT = ClassName.get(Object.class);
 
   /** From top to bottom. This will be ["java.util", "Map", "Entry"] for {@link Map.Entry}. */
@@ -139,6 +149,10 @@ public final class ClassName extends TypeName implements Comparable<ClassName> {
     checkArgument(!clazz.isPrimitive(), "primitive types cannot be represented as a ClassName");
     checkArgument(!void.class.equals(clazz), "'void' type cannot be represented as a ClassName");
     checkArgument(!clazz.isArray(), "array types cannot be represented as a ClassName");
+    return CLASS_NAMES.get(clazz);
+  }
+
+  private static ClassName compute(Class<?> clazz) {
     List<String> names = new ArrayList<>();
     while (true) {
       names.add(clazz.getSimpleName());
@@ -224,6 +238,14 @@ public final class ClassName extends TypeName implements Comparable<ClassName> {
     return canonicalName.compareTo(o.canonicalName);
   }
 
+  @Override boolean equalsIgnoringAnnotations(TypeName that) {
+    return canonicalName.equals(((ClassName) that).canonicalName);
+  }
+
+  @Override int hashCodeIgnoringAnnotations() {
+    return canonicalName.hashCode();
+  }
+
   @Override CodeWriter emit(CodeWriter out) throws IOException {
     return out.emitAndIndent(out.lookupName(this));
   }
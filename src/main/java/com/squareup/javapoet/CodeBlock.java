@@ -17,13 +17,9 @@ package com.squareup.javapoet;
 
 import java.io.IOException;
 import java.io.StringWriter;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import javax.lang.model.element.Element;
-import javax.lang.model.type.TypeMirror;
-
-import static com.squareup.javapoet.Util.checkArgument;
 
 /**
  * A fragment of a .java file, potentially containing declarations, statements, and documentation.
@@ -56,28 +52,83 @@ import static com.squareup.javapoet.Util.checkArgument;
  * </ul>
  */
 public final class CodeBlock {
-  /** A heterogeneous list containing string literals and value placeholders. */
-  final List<String> formatParts;
+  // Opcodes of the compiled format. Each placeholder is one opcode; each run of literal text is a
+  // LITERAL opcode whose characters are the next range of the packed literal buffer.
+  static final byte LITERAL = 0;
+  static final byte NAME = 1; // $N
+  static final byte LITERAL_ARG = 2; // $L
+  static final byte STRING = 3; // $S
+  static final byte TYPE = 4; // $T
+  static final byte DOLLAR = 5; // $$
+  static final byte INDENT = 6; // $>
+  static final byte UNINDENT = 7; // $<
+  static final byte STATEMENT_BEGIN = 8; // $[
+  static final byte STATEMENT_END = 9; // $]
+
+  /** One opcode per literal run or placeholder, in emit order. */
+  final byte[] ops;
+  /** The text of every literal run, concatenated. */
+  final String literals;
+  /** Literal run {@code i} is the range {@code [literalOffsets[i], literalOffsets[i + 1])}. */
+  final int[] literalOffsets;
+  /** One value per argument-consuming opcode, in emit order. */
   final List<Object> args;
 
+  /** Lazily computed {@code toString().hashCode()}, or 0 if it hasn't been computed yet. */
+  private int hashCode;
+
+  private static final byte[] NO_OPS = {};
+  private static final int[] NO_LITERAL_OFFSETS = {0};
+
+  /** Returned for every empty block, so specs with no javadoc or code share one instance. */
+  static final CodeBlock EMPTY = new CodeBlock(new Builder());
+
   private CodeBlock(Builder builder) {
-    this.formatParts = Util.immutableList(builder.formatParts);
+    this.ops = Arrays.copyOf(builder.ops, builder.opCount);
+    this.literals = builder.literals.toString();
+    this.literalOffsets = Arrays.copyOf(builder.literalOffsets, builder.literalCount + 1);
     this.args = Util.immutableList(builder.args);
   }
 
   public boolean isEmpty() {
-    return formatParts.isEmpty();
+    return ops.length == 0;
   }
 
+  /** Returns true if {@code o} is a code block that renders the same code as this one. */
   @Override public boolean equals(Object o) {
     if (this == o) return true;
     if (o == null) return false;
     if (getClass() != o.getClass()) return false;
-    return toString().equals(o.toString());
+    CodeBlock that = (CodeBlock) o;
+
+    // Blocks that were built the same way render the same code.
+    if (Arrays.equals(ops, that.ops)
+        && literals.equals(that.literals)
+        && Arrays.equals(literalOffsets, that.literalOffsets)
+        && args.equals(that.args)) {
+      return true;
+    }
+
+    // Blocks built differently may still render the same, like "$T" with String.class and
+    // "java.lang.String". Rendering is the only way to tell, but a cached hash can rule it out.
+    if (hashCode() != that.hashCode()) return false;
+    return toString().equals(that.toString());
   }
 
+  /** Returns the hash code of the rendered code. This is computed once and then cached. */
   @Override public int hashCode() {
-    return toString().hashCode();
+    int result = hashCode;
+    if (result == 0) {
+      HashingAppendable out = new HashingAppendable();
+      try {
+        new CodeWriter(out).emit(this);
+      } catch (IOException e) {
+        throw new AssertionError();
+      }
+      result = out.hashCode;
+      hashCode = result;
+    }
+    return result;
   }
 
   @Override public String toString() {
@@ -100,129 +151,85 @@ public final class CodeBlock {
 
   public Builder toBuilder() {
     Builder builder = new Builder();
-    builder.formatParts.addAll(formatParts);
-    builder.args.addAll(args);
+    builder.add(this);
     return builder;
   }
 
+  /**
+   * Sets the maximum number of parsed format strings that {@link Builder#add(String, Object...)}
+   * keeps for reuse. When the cache fills up, formats that haven't been used recently are evicted
+   * until it is half full. It is cleared when this is called. Use 0 to disable caching. The
+   * default is 4096.
+   */
+  public static void setFormatCacheSize(int maxSize) {
+    CodeFormat.setMaxCacheSize(maxSize);
+  }
+
+  /** Returns the number of format strings that were added without parsing them again. */
+  public static long formatCacheHitCount() {
+    return CodeFormat.hitCount();
+  }
+
+  /** Returns the number of format strings that were parsed while the format cache was enabled. */
+  public static long formatCacheMissCount() {
+    return CodeFormat.missCount();
+  }
+
   public static final class Builder {
-    final List<String> formatParts = new ArrayList<>();
+    // Arrays are allocated on first append; builders that only adopt a block never need them.
+    private byte[] ops = NO_OPS;
+    private int opCount;
+    private final StringBuilder literals = new StringBuilder();
+    private int[] literalOffsets = NO_LITERAL_OFFSETS;
+    private int literalCount;
     final List<Object> args = new ArrayList<>();
+    /** A block added to this empty builder. It isn't copied in until something else is added. */
+    private CodeBlock unchanged;
 
     private Builder() {
     }
 
     public Builder add(String format, Object... args) {
-      boolean hasRelative = false;
-      boolean hasIndexed = false;
-      int relativeParameterCount = 0;
-      int[] indexedParameterCount = new int[args.length];
-
-      for (int p = 0; p < format.length(); ) {
-        if (format.charAt(p) != '$') {
-          int nextP = format.indexOf('$', p + 1);
-          if (nextP == -1) nextP = format.length();
-          formatParts.add(format.substring(p, nextP));
-          p = nextP;
-          continue;
-        }
-
-        p++; // '$'.
-
-        // Consume zero or more digits, leaving 'c' as the first non-digit char after the '$'.
-        int indexStart = p;
-        char c;
-        do {
-          checkArgument(p < format.length(), "dangling format characters in '%s'", format);
-          c = format.charAt(p++);
-        } while (c >= '0' && c <= '9');
-        int indexEnd = p - 1;
-
-        // If 'c' doesn't take an argument, we're done.
-        if (c == '$' || c == '>' || c == '<' || c == '[' || c == ']') {
-          checkArgument(indexStart == indexEnd, "$$, $>, $<, $[ and $] may not have an index");
-          formatParts.add("$" + c);
-          continue;
-        }
-
-        // Find either the indexed argument, or the relative argument. (0-based).
-        int index;
-        if (indexStart < indexEnd) {
-          index = Integer.parseInt(format.substring(indexStart, indexEnd)) - 1;
-          hasIndexed = true;
-          indexedParameterCount[index % args.length]++; // modulo is needed, checked below anyway
-        } else {
-          index = relativeParameterCount;
-          hasRelative = true;
-          relativeParameterCount++;
-        }
-
-        checkArgument(index >= 0 && index < args.length,
-            "index %d for '%s' not in range (received %s arguments)",
-            index + 1, format.substring(indexStart - 1, indexEnd + 1), args.length);
-        checkArgument(!hasIndexed || !hasRelative, "cannot mix indexed and positional parameters");
-
-        switch (c) {
-          case 'N':
-            this.args.add(argToName(args[index]));
-            break;
-          case 'L':
-            this.args.add(argToLiteral(args[index]));
-            break;
-          case 'S':
-            this.args.add(argToString(args[index]));
-            break;
-          case 'T':
-            this.args.add(argToType(args[index]));
-            break;
-          default:
-            throw new IllegalArgumentException(
-                String.format("invalid format string: '%s'", format));
-        }
-
-        formatParts.add("$" + c);
-      }
-
-      if (hasRelative) {
-        checkArgument(relativeParameterCount >= args.length,
-            "unused arguments: expected %s, received %s", relativeParameterCount, args.length);
-      }
-      if (hasIndexed) {
-        List<String> unused = new ArrayList<>();
-        for (int i = 0; i < args.length; i++) {
-          if (indexedParameterCount[i] == 0) {
-            unused.add("$" + (i + 1));
-          }
-        }
-        String s = unused.size() == 1 ? "" : "s";
-        checkArgument(unused.isEmpty(), "unused argument%s: %s", s, Util.join(", ", unused));
-      }
+      copyUnchanged();
+      CodeFormat codeFormat = CodeFormat.get(format, args.length);
+      codeFormat.bind(args, this.args);
+      append(codeFormat.ops, codeFormat.literals, codeFormat.literalOffsets);
       return this;
     }
 
-    private String argToName(Object o) {
-      if (o instanceof CharSequence) return o.toString();
-      if (o instanceof ParameterSpec) return ((ParameterSpec) o).name;
-      if (o instanceof FieldSpec) return ((FieldSpec) o).name;
-      if (o instanceof MethodSpec) return ((MethodSpec) o).name;
-      if (o instanceof TypeSpec) return ((TypeSpec) o).name;
-      throw new IllegalArgumentException("expected name but was " + o);
+    private void addOp(byte op) {
+      copyUnchanged();
+      ensureOpCapacity(opCount + 1);
+      ops[opCount++] = op;
     }
 
-    private Object argToLiteral(Object o) {
-      return o;
+    /** Appends compiled code, rebasing its literal offsets onto this builder's literals. */
+    private void append(byte[] ops, String literals, int[] literalOffsets) {
+      ensureOpCapacity(opCount + ops.length);
+      System.arraycopy(ops, 0, this.ops, opCount, ops.length);
+      opCount += ops.length;
+
+      int literalsAdded = literalOffsets.length - 1;
+      ensureLiteralCapacity(literalCount + literalsAdded);
+      int base = this.literals.length();
+      for (int i = 1; i <= literalsAdded; i++) {
+        this.literalOffsets[literalCount + i] = base + literalOffsets[i];
+      }
+      literalCount += literalsAdded;
+      this.literals.append(literals);
     }
 
-    private String argToString(Object o) {
-      return o != null ? String.valueOf(o) : null;
+    private void ensureOpCapacity(int capacity) {
+      if (capacity > ops.length) {
+        ops = Arrays.copyOf(ops, Math.max(capacity, Math.max(16, ops.length * 2)));
+      }
     }
 
-    private TypeName argToType(Object o) {
-      if (o instanceof TypeName) return (TypeName) o;
-      if (o instanceof TypeMirror) return TypeName.get((TypeMirror) o);
-      if (o instanceof Element) return TypeName.get(((Element) o).asType());
-      if (o instanceof Type) return TypeName.get((Type) o);
-      throw new IllegalArgumentException("expected type but was " + o);
+    private void ensureLiteralCapacity(int literalCount) {
+      if (literalCount + 1 > literalOffsets.length) {
+        literalOffsets = Arrays.copyOf(literalOffsets,
+            Math.max(literalCount + 1, Math.max(8, literalOffsets.length * 2)));
+      }
     }
 
     /**
@@ -270,23 +277,61 @@ public final class CodeBlock {
     }
 
     public Builder add(CodeBlock codeBlock) {
-      formatParts.addAll(codeBlock.formatParts);
+      if (opCount == 0 && unchanged == null) {
+        unchanged = codeBlock;
+        return this;
+      }
+      copyUnchanged();
+      append(codeBlock.ops, codeBlock.literals, codeBlock.literalOffsets);
       args.addAll(codeBlock.args);
       return this;
     }
 
     public Builder indent() {
-      this.formatParts.add("$>");
+      addOp(INDENT);
       return this;
     }
 
     public Builder unindent() {
-      this.formatParts.add("$<");
+      addOp(UNINDENT);
       return this;
     }
 
+    private void copyUnchanged() {
+      CodeBlock codeBlock = unchanged;
+      if (codeBlock != null) {
+        unchanged = null;
+        append(codeBlock.ops, codeBlock.literals, codeBlock.literalOffsets);
+        args.addAll(codeBlock.args);
+      }
+    }
+
     public CodeBlock build() {
-      return new CodeBlock(this);
+      if (unchanged != null) return unchanged;
+      return opCount == 0 ? EMPTY : new CodeBlock(this);
+    }
+  }
+
+  /** Computes the {@link String#hashCode} of the appended characters without storing them. */
+  private static final class HashingAppendable implements Appendable {
+    int hashCode;
+
+    @Override public Appendable append(CharSequence csq) {
+      return append(csq, 0, csq.length());
+    }
+
+    @Override public Appendable append(CharSequence csq, int start, int end) {
+      int h = hashCode;
+      for (int i = start; i < end; i++) {
+        h = 31 * h + csq.charAt(i);
+      }
+      hashCode = h;
+      return this;
+    }
+
+    @Override public Appendable append(char c) {
+      hashCode = 31 * hashCode + c;
+      return this;
     }
   }
 }
@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.lang.model.element.Element;
+import javax.lang.model.type.TypeMirror;
+
+import static com.squareup.javapoet.Util.checkArgument;
+
+/**
+ * A {@link CodeBlock} format string compiled to opcodes and validated against an argument count.
+ * Binding arguments to a parsed format is all that's left to do when adding it to a builder.
+ *
+ * <p>Parsed formats are cached by format string so that repeatedly adding the same format doesn't
+ * tokenize it again. Long formats are rarely reused, so they aren't cached. The cache is bounded:
+ * when it fills up, it evicts the formats that weren't used since the previous eviction, and more
+ * if needed to get down to half of its maximum size. Formats in steady use survive.
+ */
+final class CodeFormat {
+  static final int DEFAULT_CACHE_SIZE = 4096;
+  /** Formats longer than this are parsed every time. */
+  static final int MAX_CACHED_LENGTH = 256;
+
+  private static final ConcurrentMap<String, CodeFormat> cache = new ConcurrentHashMap<>();
+  private static final AtomicLong hitCount = new AtomicLong();
+  private static final AtomicLong missCount = new AtomicLong();
+  private static volatile int maxCacheSize = DEFAULT_CACHE_SIZE;
+  private static final AtomicBoolean evicting = new AtomicBoolean();
+
+  /** Opcodes as defined by {@link CodeBlock}. */
+  final byte[] ops;
+  final String literals;
+  final int[] literalOffsets;
+  /** The 0-based argument index of each opcode that takes an argument, in order. */
+  final int[] argIndices;
+  /** The number of arguments this was validated against, or -1 if it doesn't take arguments. */
+  private final int argCount;
+  /**
+   * True if this was returned from the cache since the last eviction. Races on this only make
+   * eviction less accurate, so it isn't synchronized.
+   */
+  private boolean used;
+
+  private CodeFormat(byte[] ops, String literals, int[] literalOffsets, int[] argIndices,
+      int argCount) {
+    this.ops = ops;
+    this.literals = literals;
+    this.literalOffsets = literalOffsets;
+    this.argIndices = argIndices;
+    this.argCount = argCount;
+  }
+
+  /** Returns {@code format} parsed for {@code argCount} arguments, using the cache if possible. */
+  static CodeFormat get(String format, int argCount) {
+    int maxSize = maxCacheSize;
+    if (maxSize == 0) return parse(format, argCount);
+
+    CodeFormat result = cache.get(format);
+    if (result != null && (result.argCount == -1 || result.argCount == argCount)) {
+      hitCount.incrementAndGet();
+      if (!result.used) result.used = true; // Don't dirty the cache line on every hit.
+      return result;
+    }
+
+    missCount.incrementAndGet();
+    result = parse(format, argCount);
+    if (format.length() > MAX_CACHED_LENGTH) return result;
+    if (cache.size() >= maxSize) {
+      evict(maxSize / 2);
+    }
+    cache.put(format, result);
+    return result;
+  }
+
+  /**
+   * Removes the formats that weren't used since the last eviction, then arbitrary formats until at
+   * most {@code targetSize} remain. Other threads keep using the cache meanwhile, and skip
+   * eviction while it is underway.
+   */
+  private static void evict(int targetSize) {
+    if (!evicting.compareAndSet(false, true)) return;
+    try {
+      for (Iterator<CodeFormat> i = cache.values().iterator(); i.hasNext(); ) {
+        CodeFormat format = i.next();
+        if (format.used) {
+          format.used = false;
+        } else {
+          i.remove();
+        }
+      }
+      for (Iterator<CodeFormat> i = cache.values().iterator();
+          i.hasNext() && cache.size() > targetSize; ) {
+        i.next();
+        i.remove();
+      }
+    } finally {
+      evicting.set(false);
+    }
+  }
+
+  static void setMaxCacheSize(int maxSize) {
+    checkArgument(maxSize >= 0, "maxSize < 0: %s", maxSize);
+    maxCacheSize = maxSize;
+    cache.clear();
+  }
+
+  static int cacheSize() {
+    return cache.size();
+  }
+
+  static long hitCount() {
+    return hitCount.get();
+  }
+
+  static long missCount() {
+    return missCount.get();
+  }
+
+  static CodeFormat parse(String format, int argCount) {
+    // Each opcode consumes at least one character of the format.
+    byte[] ops = new byte[format.length()];
+    int opCount = 0;
+    StringBuilder literals = new StringBuilder();
+    int[] literalOffsets = new int[format.length() + 1];
+    int literalCount = 0;
+    int[] argIndices = new int[format.length()];
+    int argIndexCount = 0;
+
+    boolean hasRelative = false;
+    boolean hasIndexed = false;
+    int relativeParameterCount = 0;
+    int[] indexedParameterCount = new int[argCount];
+
+    for (int p = 0; p < format.length(); ) {
+      if (format.charAt(p) != '$') {
+        int nextP = format.indexOf('$', p + 1);
+        if (nextP == -1) nextP = format.length();
+        literals.append(format, p, nextP);
+        ops[opCount++] = CodeBlock.LITERAL;
+        literalOffsets[++literalCount] = literals.length();
+        p = nextP;
+        continue;
+      }
+
+      p++; // '$'.
+
+      // Consume zero or more digits, leaving 'c' as the first non-digit char after the '$'.
+      int indexStart = p;
+      char c;
+      do {
+        checkArgument(p < format.length(), "dangling format characters in '%s'", format);
+        c = format.charAt(p++);
+      } while (c >= '0' && c <= '9');
+      int indexEnd = p - 1;
+
+      // If 'c' doesn't take an argument, we're done.
+      if (c == '$' || c == '>' || c == '<' || c == '[' || c == ']') {
+        checkArgument(indexStart == indexEnd, "$$, $>, $<, $[ and $] may not have an index");
+        ops[opCount++] = c == '$' ? CodeBlock.DOLLAR
+            : c == '>' ? CodeBlock.INDENT
+            : c == '<' ? CodeBlock.UNINDENT
+            : c == '[' ? CodeBlock.STATEMENT_BEGIN
+            : CodeBlock.STATEMENT_END;
+        continue;
+      }
+
+      // Find either the indexed argument, or the relative argument. (0-based).
+      int index;
+      if (indexStart < indexEnd) {
+        index = Integer.parseInt(format.substring(indexStart, indexEnd)) - 1;
+        hasIndexed = true;
+        indexedParameterCount[index % argCount]++; // modulo is needed, checked below anyway
+      } else {
+        index = relativeParameterCount;
+        hasRelative = true;
+        relativeParameterCount++;
+      }
+
+      checkArgument(index >= 0 && index < argCount,
+          "index %d for '%s' not in range (received %s arguments)",
+          index + 1, format.substring(indexStart - 1, indexEnd + 1), argCount);
+      checkArgument(!hasIndexed || !hasRelative, "cannot mix indexed and positional parameters");
+
+      switch (c) {
+        case 'N':
+          ops[opCount++] = CodeBlock.NAME;
+          break;
+        case 'L':
+          ops[opCount++] = CodeBlock.LITERAL_ARG;
+          break;
+        case 'S':
+          ops[opCount++] = CodeBlock.STRING;
+          break;
+        case 'T':
+          ops[opCount++] = CodeBlock.TYPE;
+          break;
+        default:
+          throw new IllegalArgumentException(
+              String.format("invalid format string: '%s'", format));
+      }
+      argIndices[argIndexCount++] = index;
+    }
+
+    if (hasRelative) {
+      checkArgument(relativeParameterCount >= argCount,
+          "unused arguments: expected %s, received %s", relativeParameterCount, argCount);
+    }
+    if (hasIndexed) {
+      List<String> unused = new ArrayList<>();
+      for (int i = 0; i < argCount; i++) {
+        if (indexedParameterCount[i] == 0) {
+          unused.add("$" + (i + 1));
+        }
+      }
+      String s = unused.size() == 1 ? "" : "s";
+      checkArgument(unused.isEmpty(), "unused argument%s: %s", s, Util.join(", ", unused));
+    }
+
+    return new CodeFormat(
+        Arrays.copyOf(ops, opCount),
+        literals.toString(),
+        Arrays.copyOf(literalOffsets, literalCount + 1),
+        Arrays.copyOf(argIndices, argIndexCount),
+        hasRelative || hasIndexed ? argCount : -1);
+  }
+
+  /**
+   * Converts the arguments of this format's placeholders and adds them to {@code result}. If an
+   * argument can't be converted, {@code result} is left as it was.
+   */
+  void bind(Object[] args, List<Object> result) {
+    int start = result.size();
+    try {
+      for (int i = 0, a = 0; i < ops.length; i++) {
+        switch (ops[i]) {
+          case CodeBlock.NAME:
+            result.add(argToName(args[argIndices[a++]]));
+            break;
+          case CodeBlock.LITERAL_ARG:
+            result.add(argToLiteral(args[argIndices[a++]]));
+            break;
+          case CodeBlock.STRING:
+            result.add(argToString(args[argIndices[a++]]));
+            break;
+          case CodeBlock.TYPE:
+            result.add(argToType(args[argIndices[a++]]));
+            break;
+          default:
+            break;
+        }
+      }
+    } catch (RuntimeException e) {
+      result.subList(start, result.size()).clear();
+      throw e;
+    }
+  }
+
+  private static String argToName(Object o) {
+    if (o instanceof CharSequence) return o.toString();
+    if (o instanceof ParameterSpec) return ((ParameterSpec) o).name;
+    if (o instanceof FieldSpec) return ((FieldSpec) o).name;
+    if (o instanceof MethodSpec) return ((MethodSpec) o).name;
+    if (o instanceof TypeSpec) return ((TypeSpec) o).name;
+    throw new IllegalArgumentException("expected name but was " + o);
+  }
+
+  private static Object argToLiteral(Object o) {
+    return o;
+  }
+
+  private static String argToString(Object o) {
+    return o != null ? String.valueOf(o) : null;
+  }
+
+  private static TypeName argToType(Object o) {
+    if (o instanceof TypeName) return (TypeName) o;
+    if (o instanceof TypeMirror) return TypeName.get((TypeMirror) o);
+    if (o instanceof Element) return TypeName.get(((Element) o).asType());
+    if (o instanceof Type) return TypeName.get((Type) o);
+    throw new IllegalArgumentException("expected type but was " + o);
+  }
+}
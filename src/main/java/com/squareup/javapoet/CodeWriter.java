@@ -17,13 +17,11 @@ package com.squareup.javapoet;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.EnumSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.ListIterator;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -44,10 +42,38 @@ final class CodeWriter {
   /** Sentinel value that indicates that no user-provided package has been set. */
   private static final String NO_PACKAGE = new String();
 
+  private static final Appendable NULL_APPENDABLE = new Appendable() {
+    @Override public Appendable append(CharSequence charSequence) {
+      return this;
+    }
+    @Override public Appendable append(CharSequence charSequence, int start, int end) {
+      return this;
+    }
+    @Override public Appendable append(char c) {
+      return this;
+    }
+  };
+
+  /** Indentation for the first levels when indenting with two spaces, which is the default. */
+  private static final String[] TWO_SPACE_INDENT_PREFIXES = {
+      "", "  ", "    ", "      ", "        ", "          ", "            ", "              ",
+      "                ",
+  };
+
   private final String indent;
   private final Appendable out;
   private int indentLevel;
 
+  /** The indentation to emit at each level, computed as levels are used. */
+  private String[] indentPrefixes;
+
+  /**
+   * True if this writer has no output and only collects the types that should be imported. Such a
+   * writer visits everything that a real writer does so that it makes identical name lookups, but
+   * it skips formatting text that nobody will read.
+   */
+  private final boolean collectingImports;
+
   private boolean javadoc = false;
   private boolean comment = false;
   private String packageName = NO_PACKAGE;
@@ -77,7 +103,9 @@ final class CodeWriter {
   CodeWriter(Appendable out, String indent, Map<String, ClassName> importedTypes,
       Set<String> staticImports) {
     this.out = checkNotNull(out, "out == null");
+    this.collectingImports = out == NULL_APPENDABLE;
     this.indent = checkNotNull(indent, "indent == null");
+    this.indentPrefixes = indent.equals("  ") ? TWO_SPACE_INDENT_PREFIXES : new String[] {""};
     this.importedTypes = checkNotNull(importedTypes, "importedTypes == null");
     this.staticImports = checkNotNull(staticImports, "staticImports == null");
     this.staticImportClassNames = new LinkedHashSet<>();
@@ -86,6 +114,14 @@ final class CodeWriter {
     }
   }
 
+  /**
+   * Returns a writer that emits nothing. Use {@link #suggestedImports()} after emitting code to it
+   * to get the types that code should import.
+   */
+  static CodeWriter importsCollector(String indent, Set<String> staticImports) {
+    return new CodeWriter(NULL_APPENDABLE, indent, staticImports);
+  }
+
   public Map<String, ClassName> importedTypes() {
     return importedTypes;
   }
@@ -168,12 +204,8 @@ final class CodeWriter {
    */
   public void emitModifiers(Set<Modifier> modifiers, Set<Modifier> implicitModifiers)
       throws IOException {
-    if (modifiers.isEmpty()) return;
-    for (Modifier modifier : EnumSet.copyOf(modifiers)) {
-      if (implicitModifiers.contains(modifier)) continue;
-      emitAndIndent(modifier.name().toLowerCase(Locale.US));
-      emitAndIndent(" ");
-    }
+    if (modifiers.isEmpty() || collectingImports) return;
+    emitAndIndent(ModifierSet.of(modifiers).source(implicitModifiers));
   }
 
   public void emitModifiers(Set<Modifier> modifiers) throws IOException {
@@ -207,70 +239,81 @@ final class CodeWriter {
   }
 
   public CodeWriter emit(String format, Object... args) throws IOException {
-    return emit(CodeBlock.of(format, args));
+    CodeFormat codeFormat = CodeFormat.get(format, args.length);
+    List<Object> boundArgs = new ArrayList<>(codeFormat.argIndices.length);
+    codeFormat.bind(args, boundArgs);
+    return emit(codeFormat.ops, codeFormat.literals, codeFormat.literalOffsets, boundArgs);
   }
 
   public CodeWriter emit(CodeBlock codeBlock) throws IOException {
+    return emit(codeBlock.ops, codeBlock.literals, codeBlock.literalOffsets, codeBlock.args);
+  }
+
+  private CodeWriter emit(byte[] ops, String literals, int[] literalOffsets, List<Object> args)
+      throws IOException {
     int a = 0;
+    int l = 0;
     ClassName deferredTypeName = null; // used by "import static" logic
-    ListIterator<String> partIterator = codeBlock.formatParts.listIterator();
-    while (partIterator.hasNext()) {
-      String part = partIterator.next();
-      switch (part) {
-        case "$L":
-          emitLiteral(codeBlock.args.get(a++));
+    for (int i = 0; i < ops.length; i++) {
+      switch (ops[i]) {
+        case CodeBlock.LITERAL_ARG:
+          emitLiteral(args.get(a++));
           break;
 
-        case "$N":
-          emitAndIndent((String) codeBlock.args.get(a++));
+        case CodeBlock.NAME:
+          emitAndIndent((String) args.get(a++));
           break;
 
-        case "$S":
-          String string = (String) codeBlock.args.get(a++);
+        case CodeBlock.STRING:
+          String string = (String) args.get(a++);
+          if (collectingImports) {
+            // Only the line breaks of a wrapped string literal matter when collecting imports.
+            if (string != null) skipLines(string, 0, string.length() - 1);
+            break;
+          }
           // Emit null as a literal null: no quotes.
           emitAndIndent(string != null
               ? stringLiteralWithDoubleQuotes(string, indent)
               : "null");
           break;
 
-        case "$T":
-          TypeName typeName = (TypeName) codeBlock.args.get(a++);
+        case CodeBlock.TYPE:
+          TypeName typeName = (TypeName) args.get(a++);
           if (typeName.isAnnotated()) {
             typeName.emitAnnotations(this);
             typeName = typeName.withoutAnnotations();
           }
-          // defer "typeName.emit(this)" if next format part will be handled by the default case
-          if (typeName instanceof ClassName && partIterator.hasNext()) {
-            if (!codeBlock.formatParts.get(partIterator.nextIndex()).startsWith("$")) {
-              ClassName candidate = (ClassName) typeName;
-              if (staticImportClassNames.contains(candidate.canonicalName)) {
-                checkState(deferredTypeName == null, "pending type for static import?!");
-                deferredTypeName = candidate;
-                break;
-              }
+          // defer "typeName.emit(this)" if next format part will be handled by the literal case
+          if (typeName instanceof ClassName && i + 1 < ops.length
+              && ops[i + 1] == CodeBlock.LITERAL) {
+            ClassName candidate = (ClassName) typeName;
+            if (staticImportClassNames.contains(candidate.canonicalName)) {
+              checkState(deferredTypeName == null, "pending type for static import?!");
+              deferredTypeName = candidate;
+              break;
             }
           }
           typeName.emit(this);
           break;
 
-        case "$$":
+        case CodeBlock.DOLLAR:
           emitAndIndent("$");
           break;
 
-        case "$>":
+        case CodeBlock.INDENT:
           indent();
           break;
 
-        case "$<":
+        case CodeBlock.UNINDENT:
           unindent();
           break;
 
-        case "$[":
+        case CodeBlock.STATEMENT_BEGIN:
           checkState(statementLine == -1, "statement enter $[ followed by statement enter $[");
           statementLine = 0;
           break;
 
-        case "$]":
+        case CodeBlock.STATEMENT_END:
           checkState(statementLine != -1, "statement exit $] has no matching statement enter $[");
           if (statementLine > 0) {
             unindent(2); // End a multi-line statement. Decrease the indentation level.
@@ -278,10 +321,13 @@ final class CodeWriter {
           statementLine = -1;
           break;
 
-        default:
+        case CodeBlock.LITERAL:
+          int start = literalOffsets[l];
+          int end = literalOffsets[++l];
           // handle deferred type
           if (deferredTypeName != null) {
-            if (part.startsWith(".")) {
+            if (literals.charAt(start) == '.') {
+              String part = literals.substring(start, end);
               if (emitStaticImportMember(deferredTypeName.canonicalName, part)) {
                 // okay, static import hit and all was emitted, so clean-up and jump to next part
                 deferredTypeName = null;
@@ -291,8 +337,11 @@ final class CodeWriter {
             deferredTypeName.emit(this);
             deferredTypeName = null;
           }
-          emitAndIndent(part);
+          emitAndIndent(literals, start, end);
           break;
+
+        default:
+          throw new AssertionError(ops[i]);
       }
     }
     return this;
@@ -333,7 +382,7 @@ final class CodeWriter {
       CodeBlock codeBlock = (CodeBlock) o;
       emit(codeBlock);
     } else {
-      emitAndIndent(String.valueOf(o));
+      emitAndIndent(o instanceof CharSequence ? (CharSequence) o : String.valueOf(o));
     }
   }
 
@@ -351,6 +400,7 @@ final class CodeWriter {
       nameResolved = resolved != null;
 
       if (Objects.equals(resolved, c)) {
+        if (c == className) return className.simpleName(); // Common case: no need to join.
         int suffixOffset = c.simpleNames().size() - 1;
         return join(".", className.simpleNames().subList(
             suffixOffset, className.simpleNames().size()));
@@ -431,48 +481,89 @@ final class CodeWriter {
    * {@link #out} does it through here, since we emit indentation lazily in order to avoid
    * unnecessary trailing whitespace.
    */
-  CodeWriter emitAndIndent(String s) throws IOException {
-    boolean first = true;
-    for (String line : s.split("\n", -1)) {
-      // Emit a newline character. Make sure blank lines in Javadoc & comments look good.
-      if (!first) {
-        if ((javadoc || comment) && trailingNewline) {
+  CodeWriter emitAndIndent(CharSequence s) throws IOException {
+    return emitAndIndent(s, 0, s.length());
+  }
+
+  /** Emits the characters of {@code s} in {@code [start, end)} like {@link #emitAndIndent}. */
+  CodeWriter emitAndIndent(CharSequence s, int start, int end) throws IOException {
+    if (collectingImports) {
+      skipLines(s, start, end);
+      return this;
+    }
+
+    for (int lineStart = start; ; ) {
+      int lineEnd = indexOfNewline(s, lineStart, end);
+
+      // Emit indentation and comment prefix if necessary. Don't indent empty lines.
+      if (lineStart < lineEnd) {
+        if (trailingNewline) {
           emitIndentation();
-          out.append(javadoc ? " *" : "//");
-        }
-        out.append('\n');
-        trailingNewline = true;
-        if (statementLine != -1) {
-          if (statementLine == 0) {
-            indent(2); // Begin multiple-line statement. Increase the indentation level.
+          if (javadoc) {
+            out.append(" * ");
+          } else if (comment) {
+            out.append("// ");
           }
-          statementLine++;
         }
+        out.append(s, lineStart, lineEnd);
+        trailingNewline = false;
       }
 
-      first = false;
-      if (line.isEmpty()) continue; // Don't indent empty lines.
+      if (lineEnd == end) break;
 
-      // Emit indentation and comment prefix if necessary.
-      if (trailingNewline) {
+      // Emit a newline character. Make sure blank lines in Javadoc & comments look good.
+      if ((javadoc || comment) && trailingNewline) {
         emitIndentation();
-        if (javadoc) {
-          out.append(" * ");
-        } else if (comment) {
-          out.append("// ");
+        out.append(javadoc ? " *" : "//");
+      }
+      out.append('\n');
+      trailingNewline = true;
+      if (statementLine != -1) {
+        if (statementLine == 0) {
+          indent(2); // Begin multiple-line statement. Increase the indentation level.
         }
+        statementLine++;
       }
-
-      out.append(line);
-      trailingNewline = false;
+      lineStart = lineEnd + 1;
     }
     return this;
   }
 
+  /**
+   * Updates the statement state for the line breaks of {@code s} in {@code [start, end)} without
+   * emitting anything. This keeps an imports collector's indentation in step with a writer that
+   * emits the same code.
+   */
+  private void skipLines(CharSequence s, int start, int end) {
+    if (statementLine == -1) return;
+    for (int i = indexOfNewline(s, start, end); i < end; i = indexOfNewline(s, i + 1, end)) {
+      if (statementLine == 0) {
+        indent(2); // Begin multiple-line statement. Increase the indentation level.
+      }
+      statementLine++;
+    }
+  }
+
+  /**
+   * Returns the index of the first newline of {@code s} in {@code [start, end)}, or {@code end}.
+   */
+  private static int indexOfNewline(CharSequence s, int start, int end) {
+    // Don't use String.indexOf: it would scan past end, to the end of a block's packed literals.
+    for (int i = start; i < end; i++) {
+      if (s.charAt(i) == '\n') return i;
+    }
+    return end;
+  }
+
   private void emitIndentation() throws IOException {
-    for (int j = 0; j < indentLevel; j++) {
-      out.append(indent);
+    if (indentLevel >= indentPrefixes.length) {
+      String[] grown = Arrays.copyOf(indentPrefixes, indentLevel + 1);
+      for (int i = indentPrefixes.length; i < grown.length; i++) {
+        grown[i] = grown[i - 1] + indent;
+      }
+      indentPrefixes = grown;
     }
+    out.append(indentPrefixes[indentLevel]);
   }
 
   /**
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.lang.model.SourceVersion;
+
+import static com.squareup.javapoet.Util.checkNotNull;
+
+/**
+ * Like {@link NameAllocator}, but may be shared by threads generating the members of one type in
+ * parallel. Names and tags are reserved without locking, so threads don't wait on each other.
+ *
+ * <p>Names from {@link #newName(String, Object)} are returned immediately. When two threads
+ * suggest the same name, the first to reserve it gets it and the other gets a suffixed name, so
+ * the result depends on timing. To get the same names on every run, use the deterministic mode
+ * instead: reserve every name with {@link #reserve(String, Object, long)} from any thread, then
+ * call {@link #resolve()} once all reservations are in. Names are assigned in order of the
+ * reservation's {@code order} argument, exactly as a {@link NameAllocator} would assign them if
+ * called sequentially in that order. <pre>   {@code
+ *
+ *   // In parallel, once per method:
+ *   nameAllocator.reserve("value", valueProperty, methodIndex);
+ *
+ *   // Then, once:
+ *   nameAllocator.resolve();
+ *
+ *   // In parallel again:
+ *   builder.addStatement("return $N", nameAllocator.get(valueProperty));
+ * }</pre>
+ *
+ * Reservations sharing an {@code order} are assigned in the sequence they were made, which is
+ * only deterministic if they were all made by one thread.
+ */
+public final class ConcurrentNameAllocator {
+  private static final Comparator<Reservation> RESERVATION_ORDER = new Comparator<Reservation>() {
+    @Override public int compare(Reservation a, Reservation b) {
+      if (a.order != b.order) return a.order < b.order ? -1 : 1;
+      return a.sequence < b.sequence ? -1 : a.sequence == b.sequence ? 0 : 1;
+    }
+  };
+
+  private final Set<String> allocatedNames =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private final ConcurrentMap<Object, String> tagToName = new ConcurrentHashMap<>();
+  /** For each identifier, how many underscores the next candidate name has. */
+  private final ConcurrentMap<String, AtomicInteger> suffixLengths = new ConcurrentHashMap<>();
+  private final Queue<Reservation> reservations = new ConcurrentLinkedQueue<>();
+  private final AtomicLong reservationCount = new AtomicLong();
+
+  /**
+   * Return a new name using {@code suggestion} that will not be a Java identifier or clash with
+   * other names.
+   */
+  public String newName(String suggestion) {
+    checkNotNull(suggestion, "suggestion");
+    return allocate(NameAllocator.toJavaIdentifier(suggestion));
+  }
+
+  /**
+   * Return a new name using {@code suggestion} that will not be a Java identifier or clash with
+   * other names. The returned value can be queried multiple times by passing {@code tag} to
+   * {@link #get(Object)}.
+   */
+  public String newName(String suggestion, Object tag) {
+    checkNotNull(suggestion, "suggestion");
+    checkNotNull(tag, "tag");
+    return assign(NameAllocator.toJavaIdentifier(suggestion), tag);
+  }
+
+  /**
+   * Reserves a name using {@code suggestion} for {@code tag}. The name is assigned by the next
+   * call to {@link #resolve()}, in order of {@code order}.
+   */
+  public void reserve(String suggestion, Object tag, long order) {
+    checkNotNull(suggestion, "suggestion");
+    checkNotNull(tag, "tag");
+    reservations.add(new Reservation(NameAllocator.toJavaIdentifier(suggestion), tag, order,
+        reservationCount.getAndIncrement()));
+  }
+
+  /**
+   * Assigns names to all pending reservations. Call this once no thread is making reservations.
+   *
+   * @throws IllegalArgumentException if a reserved tag already has a name, or was reserved more
+   *     than once. No names are assigned and the reservations stay pending.
+   */
+  public synchronized void resolve() {
+    List<Reservation> pending = new ArrayList<>();
+    for (Reservation reservation; (reservation = reservations.poll()) != null; ) {
+      pending.add(reservation);
+    }
+    Collections.sort(pending, RESERVATION_ORDER);
+
+    // Check every tag before assigning any names, so that a failed call changes nothing.
+    Map<Object, String> pendingTags = new HashMap<>();
+    for (Reservation reservation : pending) {
+      String replaced = tagToName.get(reservation.tag);
+      if (replaced == null) {
+        replaced = pendingTags.put(reservation.tag, reservation.identifier);
+      }
+      if (replaced != null) {
+        reservations.addAll(pending);
+        throw tagConflict(reservation.tag, replaced, reservation.identifier);
+      }
+    }
+
+    for (Reservation reservation : pending) {
+      assign(reservation.identifier, reservation.tag);
+    }
+  }
+
+  /** Retrieve a name created with {@link #newName(String, Object)} or {@link #resolve()}. */
+  public String get(Object tag) {
+    String result = tagToName.get(tag);
+    if (result == null) {
+      throw new IllegalArgumentException("unknown tag: " + tag);
+    }
+    return result;
+  }
+
+  private String assign(String identifier, Object tag) {
+    String replaced = tagToName.get(tag);
+    if (replaced != null) throw tagConflict(tag, replaced, identifier);
+    String name = allocate(identifier);
+    replaced = tagToName.putIfAbsent(tag, name);
+    // Another thread took the tag first. The name stays allocated: the identifier's suffix counter
+    // has moved past it, so it couldn't be handed out again anyway.
+    if (replaced != null) throw tagConflict(tag, replaced, identifier);
+    return name;
+  }
+
+  private static IllegalArgumentException tagConflict(Object tag, String a, String b) {
+    return new IllegalArgumentException(
+        "tag " + tag + " cannot be used for both '" + a + "' and '" + b + "'");
+  }
+
+  /**
+   * Allocates {@code identifier} followed by the fewest free underscores. Each candidate is handed
+   * to one thread only, so threads allocating the same identifier never probe the same candidate.
+   */
+  private String allocate(String identifier) {
+    AtomicInteger suffixLength = suffixLengths.get(identifier);
+    if (suffixLength == null) {
+      AtomicInteger created = new AtomicInteger();
+      suffixLength = suffixLengths.putIfAbsent(identifier, created);
+      if (suffixLength == null) suffixLength = created;
+    }
+    while (true) {
+      String name = NameAllocator.withSuffix(identifier, suffixLength.getAndIncrement());
+      if (!SourceVersion.isKeyword(name) && allocatedNames.add(name)) return name;
+    }
+  }
+
+  private static final class Reservation {
+    final String identifier;
+    final Object tag;
+    final long order;
+    final long sequence;
+
+    Reservation(String identifier, Object tag, long order, long sequence) {
+      this.identifier = identifier;
+      this.tag = tag;
+      this.order = order;
+      this.sequence = sequence;
+    }
+  }
+}
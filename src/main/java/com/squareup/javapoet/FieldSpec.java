@@ -38,14 +38,17 @@ public final class FieldSpec {
   public final Set<Modifier> modifiers;
   public final CodeBlock initializer;
 
+  /** Lazily computed hash code, or 0 if it hasn't been computed yet. */
+  private int hashCode;
+
   private FieldSpec(Builder builder) {
     this.type = checkNotNull(builder.type, "type == null");
     this.name = checkNotNull(builder.name, "name == null");
-    this.javadoc = builder.javadoc.build();
+    this.javadoc = builder.javadoc != null ? builder.javadoc.build() : CodeBlock.EMPTY;
     this.annotations = Util.immutableList(builder.annotations);
-    this.modifiers = Util.immutableSet(builder.modifiers);
+    this.modifiers = ModifierSet.of(builder.modifiers);
     this.initializer = (builder.initializer == null)
-        ? CodeBlock.builder().build()
+        ? CodeBlock.EMPTY
         : builder.initializer;
   }
 
@@ -69,11 +72,28 @@ public final class FieldSpec {
     if (this == o) return true;
     if (o == null) return false;
     if (getClass() != o.getClass()) return false;
-    return toString().equals(o.toString());
+    FieldSpec that = (FieldSpec) o;
+    if (hashCode != 0 && that.hashCode != 0 && hashCode != that.hashCode) return false;
+    return name.equals(that.name)
+        && type.equals(that.type)
+        && modifiers.equals(that.modifiers)
+        && annotations.equals(that.annotations)
+        && javadoc.equals(that.javadoc)
+        && initializer.equals(that.initializer);
   }
 
   @Override public int hashCode() {
-    return toString().hashCode();
+    int result = hashCode;
+    if (result == 0) {
+      result = type.hashCode();
+      result = 31 * result + name.hashCode();
+      result = 31 * result + javadoc.hashCode();
+      result = 31 * result + annotations.hashCode();
+      result = 31 * result + Util.modifiersHashCode(modifiers);
+      result = 31 * result + initializer.hashCode();
+      hashCode = result;
+    }
+    return result;
   }
 
   @Override public String toString() {
@@ -100,7 +120,7 @@ public final class FieldSpec {
 
   public Builder toBuilder() {
     Builder builder = new Builder(type, name);
-    builder.javadoc.add(javadoc);
+    if (!javadoc.isEmpty()) builder.javadoc = javadoc.toBuilder();
     builder.annotations.addAll(annotations);
     builder.modifiers.addAll(modifiers);
     builder.initializer = initializer.isEmpty() ? null : initializer;
@@ -111,8 +131,8 @@ public final class FieldSpec {
     private final TypeName type;
     private final String name;
 
-    private final CodeBlock.Builder javadoc = CodeBlock.builder();
-    private final List<AnnotationSpec> annotations = new ArrayList<>();
+    private CodeBlock.Builder javadoc; // Allocated on first use.
+    private final List<AnnotationSpec> annotations = new SharedList.Builder<>();
     private final List<Modifier> modifiers = new ArrayList<>();
     private CodeBlock initializer = null;
 
@@ -122,7 +142,7 @@ public final class FieldSpec {
     }
 
     public Builder addJavadoc(String format, Object... args) {
-      javadoc.add(format, args);
+      javadoc().add(format, args);
       return this;
     }
 
@@ -163,6 +183,11 @@ public final class FieldSpec {
       return this;
     }
 
+    private CodeBlock.Builder javadoc() {
+      if (javadoc == null) javadoc = CodeBlock.builder();
+      return javadoc;
+    }
+
     public FieldSpec build() {
       return new FieldSpec(this);
     }
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.GenericDeclaration;
+import java.lang.reflect.Member;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the type names of generic reflection types like {@code List<String>} and {@code T[]}.
+ * This is safe to use from multiple threads.
+ *
+ * <p>Each type is cached in a map attached to one of the classes it mentions. That class is chosen
+ * so that its class loader can see every other class the type mentions; when the type is garbage,
+ * so is its cache entry. Types that mention classes from unrelated class loaders aren't cached.
+ */
+final class GenericTypeCache {
+  private static final ClassValue<ConcurrentMap<Type, TypeName>> CACHES =
+      new ClassValue<ConcurrentMap<Type, TypeName>>() {
+        @Override protected ConcurrentMap<Type, TypeName> computeValue(Class<?> type) {
+          return new ConcurrentHashMap<>();
+        }
+      };
+
+  private GenericTypeCache() {
+  }
+
+  static TypeName get(Type type) {
+    Anchor anchor = new Anchor();
+    anchor.add(type);
+    if (anchor.type == null || anchor.unrelated) {
+      return TypeName.get(type, new LinkedHashMap<Type, TypeVariableName>());
+    }
+
+    ConcurrentMap<Type, TypeName> cache = CACHES.get(anchor.type);
+    TypeName result = cache.get(type);
+    if (result == null) {
+      result = TypeName.get(type, new LinkedHashMap<Type, TypeVariableName>());
+      TypeName existing = cache.putIfAbsent(type, result);
+      if (existing != null) result = existing;
+    }
+    return result;
+  }
+
+  /** Finds the class whose class loader is a descendant of those of all other mentioned classes. */
+  private static final class Anchor {
+    Class<?> type;
+    boolean unrelated;
+
+    void add(Type type) {
+      if (unrelated) return;
+
+      if (type instanceof Class<?>) {
+        add((Class<?>) type);
+
+      } else if (type instanceof ParameterizedType) {
+        ParameterizedType parameterizedType = (ParameterizedType) type;
+        add(parameterizedType.getOwnerType());
+        add(parameterizedType.getRawType());
+        for (Type typeArgument : parameterizedType.getActualTypeArguments()) {
+          add(typeArgument);
+        }
+
+      } else if (type instanceof WildcardType) {
+        WildcardType wildcardType = (WildcardType) type;
+        for (Type bound : wildcardType.getUpperBounds()) {
+          add(bound);
+        }
+        for (Type bound : wildcardType.getLowerBounds()) {
+          add(bound);
+        }
+
+      } else if (type instanceof TypeVariable<?>) {
+        // A type variable's bounds are visible from the class that declares it.
+        GenericDeclaration declaration = ((TypeVariable<?>) type).getGenericDeclaration();
+        if (declaration instanceof Class<?>) {
+          add((Class<?>) declaration);
+        } else if (declaration instanceof Member) {
+          add(((Member) declaration).getDeclaringClass());
+        } else {
+          unrelated = true;
+        }
+
+      } else if (type instanceof GenericArrayType) {
+        add(((GenericArrayType) type).getGenericComponentType());
+
+      } else if (type != null) {
+        unrelated = true; // Unknown Type implementation.
+      }
+    }
+
+    private void add(Class<?> candidate) {
+      if (this.type == null) {
+        this.type = candidate;
+        return;
+      }
+      ClassLoader current = this.type.getClassLoader();
+      ClassLoader other = candidate.getClassLoader();
+      if (current == other) return;
+      if (isAncestor(current, other)) {
+        this.type = candidate;
+      } else if (!isAncestor(other, current)) {
+        unrelated = true;
+      }
+    }
+
+    /** Returns true if {@code ancestor} is {@code loader} or one of its parents. */
+    private static boolean isAncestor(ClassLoader ancestor, ClassLoader loader) {
+      if (ancestor == null) return true; // The bootstrap class loader.
+      try {
+        for (ClassLoader l = loader; l != null; l = l.getParent()) {
+          if (l == ancestor) return true;
+        }
+      } catch (SecurityException e) {
+        return false;
+      }
+      return false;
+    }
+  }
+}
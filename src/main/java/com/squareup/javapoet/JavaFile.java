@@ -15,15 +15,23 @@
  */
 package com.squareup.javapoet;
 
+import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
 import java.io.Writer;
 import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -39,21 +47,13 @@ import javax.tools.SimpleJavaFileObject;
 
 import static com.squareup.javapoet.Util.checkArgument;
 import static com.squareup.javapoet.Util.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
 
 /** A Java file containing a single top level class. */
 public final class JavaFile {
-  private static final Appendable NULL_APPENDABLE = new Appendable() {
-    @Override public Appendable append(CharSequence charSequence) {
-      return this;
-    }
-    @Override public Appendable append(CharSequence charSequence, int start, int end) {
-      return this;
-    }
-    @Override public Appendable append(char c) {
-      return this;
-    }
-  };
-
   public final CodeBlock fileComment;
   public final String packageName;
   public final TypeSpec typeSpec;
@@ -61,6 +61,9 @@ public final class JavaFile {
   private final Set<String> staticImports;
   private final String indent;
 
+  /** Lazily computed hash code, or 0 if it hasn't been computed yet. */
+  private int hashCode;
+
   private JavaFile(Builder builder) {
     this.fileComment = builder.fileComment.build();
     this.packageName = builder.packageName;
@@ -71,8 +74,9 @@ public final class JavaFile {
   }
 
   public void writeTo(Appendable out) throws IOException {
-    // First pass: emit the entire class, just to collect the types we'll need to import.
-    CodeWriter importsCollector = new CodeWriter(NULL_APPENDABLE, indent, staticImports);
+    // First pass: walk the entire class without formatting it, just to collect the types we'll
+    // need to import.
+    CodeWriter importsCollector = CodeWriter.importsCollector(indent, staticImports);
     emit(importsCollector);
     Map<String, ClassName> suggestedImports = importsCollector.suggestedImports();
 
@@ -81,31 +85,134 @@ public final class JavaFile {
     emit(codeWriter);
   }
 
-  /** Writes this to {@code directory} the standard directory structure. */
+  /**
+   * Returns the SHA-256 hash of this file's UTF-8 encoded source code. This is the same as hashing
+   * the bytes of {@link #toString()}, but it doesn't hold the whole file in memory at once.
+   */
+  public byte[] fingerprint() {
+    return fingerprint(Util.sha256());
+  }
+
+  /**
+   * Returns the hash computed by {@code digest} of this file's UTF-8 encoded source code. The
+   * digest is reset first.
+   */
+  public byte[] fingerprint(MessageDigest digest) {
+    checkNotNull(digest, "digest == null");
+    digest.reset();
+    try (Writer writer = Utf8Writer.digesting(digest)) {
+      writeTo(writer);
+    } catch (IOException e) {
+      throw new AssertionError();
+    }
+    return digest.digest();
+  }
+
+  /** Writes this to {@code directory} as UTF-8 using the standard directory structure. */
   public void writeTo(Path directory) throws IOException {
+    writeTo(directory, UTF_8);
+  }
+
+  /** Writes this to {@code directory} as {@code charset} using the standard directory structure. */
+  public void writeTo(Path directory, Charset charset) throws IOException {
+    checkNotNull(charset, "charset == null");
+    writeToFile(outputPath(directory), charset);
+  }
+
+  /** Writes this to the file at {@code path}, replacing its contents. */
+  void writeToFile(Path path, Charset charset) throws IOException {
+    FileChannel channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE);
+    try (Writer writer = newWriter(channel, charset)) {
+      writeTo(writer);
+    }
+  }
+
+  /**
+   * Writes this to {@code directory} as UTF-8 using the standard directory structure, unless the
+   * file there already has exactly these contents. An unchanged file is not touched, so its
+   * modification time is preserved.
+   *
+   * @return true if the file was written, or false if it was already up to date.
+   */
+  public boolean writeToIfChanged(Path directory) throws IOException {
+    return writeToIfChanged(directory, UTF_8);
+  }
+
+  /**
+   * Writes this to {@code directory} as {@code charset} using the standard directory structure,
+   * unless the file there already has exactly these contents.
+   *
+   * @return true if the file was written, or false if it was already up to date.
+   */
+  public boolean writeToIfChanged(Path directory, Charset charset) throws IOException {
+    checkNotNull(charset, "charset == null");
+    return writeToFileIfChanged(outputPath(directory), charset);
+  }
+
+  /**
+   * Writes this to the file at {@code path} unless it already has exactly these contents. The
+   * rendered source is compared against the file as it is produced, and a changed file is replaced
+   * atomically.
+   */
+  boolean writeToFileIfChanged(Path path, Charset charset) throws IOException {
+    ReplacingFileChannel channel = new ReplacingFileChannel(path);
+    try {
+      try (Writer writer = newWriter(channel, charset)) {
+        writeTo(writer);
+      }
+      return channel.commit();
+    } finally {
+      channel.release();
+    }
+  }
+
+  /** Returns a writer that encodes characters as {@code charset} onto {@code channel}. */
+  private static Writer newWriter(WritableByteChannel channel, Charset charset) {
+    return charset.equals(UTF_8)
+        ? new Utf8Writer(channel)
+        : new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), charset));
+  }
+
+  /** Returns the path of this file in {@code directory}, creating its package directories. */
+  private Path outputPath(Path directory) throws IOException {
     checkArgument(Files.notExists(directory) || Files.isDirectory(directory),
         "path %s exists but is not a directory.", directory);
-    Path outputDirectory = directory;
+    Path outputDirectory = packageDirectory(directory, packageName);
     if (!packageName.isEmpty()) {
-      for (String packageComponent : packageName.split("\\.")) {
-        outputDirectory = outputDirectory.resolve(packageComponent);
-      }
       Files.createDirectories(outputDirectory);
     }
 
-    Path outputPath = outputDirectory.resolve(typeSpec.name + ".java");
-    try (Writer writer = new OutputStreamWriter(Files.newOutputStream(outputPath))) {
-      writeTo(writer);
+    return outputDirectory.resolve(fileName());
+  }
+
+  /** Returns the directory in {@code root} that holds the sources of {@code packageName}. */
+  static Path packageDirectory(Path root, String packageName) {
+    Path result = root;
+    if (!packageName.isEmpty()) {
+      for (String packageComponent : packageName.split("\\.")) {
+        result = result.resolve(packageComponent);
+      }
     }
+    return result;
+  }
+
+  /** Returns the name of this file within its package directory. */
+  String fileName() {
+    return typeSpec.name + ".java";
   }
 
-  /** Writes this to {@code directory} the standard directory structure. */
+  /** Writes this to {@code directory} as UTF-8 using the standard directory structure. */
   public void writeTo(File directory) throws IOException {
     writeTo(directory.toPath());
   }
 
   /** Writes this to {@code filer}. */
   public void writeTo(Filer filer) throws IOException {
+    writeTo(filer, null);
+  }
+
+  /** Writes this to {@code filer}, using {@code source} if it has already been rendered. */
+  void writeTo(Filer filer, String source) throws IOException {
     String fileName = packageName.isEmpty()
         ? typeSpec.name
         : packageName + "." + typeSpec.name;
@@ -113,7 +220,11 @@ public final class JavaFile {
     JavaFileObject filerSourceFile = filer.createSourceFile(fileName,
         originatingElements.toArray(new Element[originatingElements.size()]));
     try (Writer writer = filerSourceFile.openWriter()) {
-      writeTo(writer);
+      if (source != null) {
+        writer.write(source);
+      } else {
+        writeTo(writer);
+      }
     } catch (Exception e) {
       try {
         filerSourceFile.delete();
@@ -162,11 +273,31 @@ public final class JavaFile {
     if (this == o) return true;
     if (o == null) return false;
     if (getClass() != o.getClass()) return false;
-    return toString().equals(o.toString());
+    JavaFile that = (JavaFile) o;
+    if (hashCode != 0 && that.hashCode != 0 && hashCode != that.hashCode) return false;
+    if (!packageName.equals(that.packageName)
+        || !staticImports.equals(that.staticImports)
+        || !fileComment.equals(that.fileComment)
+        || !typeSpec.equals(that.typeSpec)) {
+      return false;
+    }
+    if (skipJavaLangImports == that.skipJavaLangImports && indent.equals(that.indent)) return true;
+    // These settings only change the output if it has something to indent or a java.lang type to
+    // import. Files are equal if they render the same, so compare the output in this rare case.
+    return toString().equals(that.toString());
   }
 
   @Override public int hashCode() {
-    return toString().hashCode();
+    int result = hashCode;
+    if (result == 0) {
+      result = fileComment.hashCode();
+      result = 31 * result + packageName.hashCode();
+      result = 31 * result + typeSpec.hashCode();
+      result = 31 * result + staticImports.hashCode();
+      // The indent and skipJavaLangImports are left out: files that differ in them may be equal.
+      hashCode = result;
+    }
+    return result;
   }
 
   @Override public String toString() {
@@ -179,23 +310,62 @@ public final class JavaFile {
     }
   }
 
+  /**
+   * Returns a source file object for this file, for use with an in-memory {@link
+   * javax.tools.JavaCompiler}. The source is rendered the first time it is read and cached after
+   * that; its byte stream is UTF-8 encoded. The returned object is safe for use by multiple
+   * threads.
+   */
   public JavaFileObject toJavaFileObject() {
     URI uri = URI.create((packageName.isEmpty()
         ? typeSpec.name
         : packageName.replace('.', '/') + '/' + typeSpec.name)
         + Kind.SOURCE.extension);
-    return new SimpleJavaFileObject(uri, Kind.SOURCE) {
-      private final long lastModified = System.currentTimeMillis();
-      @Override public String getCharContent(boolean ignoreEncodingErrors) {
-        return JavaFile.this.toString();
-      }
-      @Override public InputStream openInputStream() throws IOException {
-        return new ByteArrayInputStream(getCharContent(true).getBytes());
+    return new SourceFileObject(uri, this);
+  }
+
+  private static final class SourceFileObject extends SimpleJavaFileObject {
+    private final long lastModified = System.currentTimeMillis();
+    private final JavaFile javaFile;
+    private volatile String content;
+    private volatile byte[] bytes;
+
+    SourceFileObject(URI uri, JavaFile javaFile) {
+      super(uri, Kind.SOURCE);
+      this.javaFile = javaFile;
+    }
+
+    @Override public String getCharContent(boolean ignoreEncodingErrors) {
+      String result = content;
+      if (result == null) {
+        synchronized (this) {
+          result = content;
+          if (result == null) {
+            result = javaFile.toString();
+            content = result;
+          }
+        }
       }
-      @Override public long getLastModified() {
-        return lastModified;
+      return result;
+    }
+
+    @Override public Reader openReader(boolean ignoreEncodingErrors) {
+      return new StringReader(getCharContent(ignoreEncodingErrors));
+    }
+
+    @Override public InputStream openInputStream() {
+      // Racing threads may each encode, but they compute equal arrays and nobody mutates them.
+      byte[] result = bytes;
+      if (result == null) {
+        result = getCharContent(true).getBytes(UTF_8);
+        bytes = result;
       }
-    };
+      return new ByteArrayInputStream(result);
+    }
+
+    @Override public long getLastModified() {
+      return lastModified;
+    }
   }
 
   public static Builder builder(String packageName, TypeSpec typeSpec) {
@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static com.squareup.javapoet.Util.checkArgument;
+import static com.squareup.javapoet.Util.checkNotNull;
+import static com.squareup.javapoet.Util.checkState;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compiles batches of Java files in memory and loads the resulting classes, for programs that
+ * generate and run code at runtime:
+ *
+ * <pre>   {@code
+ *
+ *   JavaFileCompiler compiler = new JavaFileCompiler();
+ *   ClassLoader loader = compiler.load(javaFiles, getClass().getClassLoader());
+ *   Class<?> serializer = loader.loadClass("com.example.PersonSerializer");
+ * }</pre>
+ *
+ * <p>Neither sources nor class files touch the disk. The compiler and its file manager are reused
+ * across batches, and each batch's class files are cached by the fingerprints of its sources so
+ * an unchanged batch is never recompiled. Because a class file can depend on the other files it
+ * was compiled with, the cache key covers the whole batch rather than individual files. Cached
+ * results are not invalidated if classes on the compiler's class path change.
+ *
+ * <p>Annotation processing is disabled. Instances are thread-safe, but compile one batch at a
+ * time.
+ */
+public final class JavaFileCompiler implements Closeable {
+  /** The number of batches whose class files are retained. */
+  private static final int MAX_CACHED_BATCHES = 256;
+
+  private final JavaCompiler compiler;
+  private final List<String> options;
+  private final StandardJavaFileManager standardFileManager;
+  private final Map<ByteBuffer, Map<String, byte[]>> cache = new LruMap<>(MAX_CACHED_BATCHES);
+  private long hitCount;
+  private long missCount;
+
+  /** Creates an instance that uses the system Java compiler with no options. */
+  public JavaFileCompiler() {
+    this(systemJavaCompiler(), Collections.<String>emptyList());
+  }
+
+  /** Creates an instance that uses {@code compiler} with {@code options}, like {@code -g}. */
+  public JavaFileCompiler(JavaCompiler compiler, Iterable<String> options) {
+    this.compiler = checkNotNull(compiler, "compiler == null");
+    checkNotNull(options, "options == null");
+    List<String> optionList = new ArrayList<>();
+    for (String option : options) {
+      optionList.add(checkNotNull(option, "options contains null"));
+    }
+    optionList.add("-proc:none");
+    this.options = Collections.unmodifiableList(optionList);
+    this.standardFileManager = compiler.getStandardFileManager(null, null, UTF_8);
+  }
+
+  private static JavaCompiler systemJavaCompiler() {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    checkState(compiler != null, "no system Java compiler is available");
+    return compiler;
+  }
+
+  /**
+   * Compiles {@code javaFiles} and returns their class files, including those of nested types,
+   * keyed by binary name like {@code com.example.Outer$Inner}.
+   */
+  public Map<String, byte[]> compile(Iterable<JavaFile> javaFiles) throws CompilationException {
+    Map<String, byte[]> classes = classes(javaFiles);
+    Map<String, byte[]> result = new LinkedHashMap<>();
+    for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().clone());
+    }
+    return Collections.unmodifiableMap(result);
+  }
+
+  /**
+   * Compiles {@code javaFiles} and returns a new class loader that defines their classes, and
+   * delegates to {@code parent} for everything else.
+   */
+  public ClassLoader load(Iterable<JavaFile> javaFiles, ClassLoader parent)
+      throws CompilationException {
+    return new ByteArrayClassLoader(classes(javaFiles), parent);
+  }
+
+  private synchronized Map<String, byte[]> classes(Iterable<JavaFile> javaFiles)
+      throws CompilationException {
+    checkNotNull(javaFiles, "javaFiles == null");
+    List<JavaFileObject> sources = new ArrayList<>();
+    // Sorted by URI so that the key doesn't depend on the batch's iteration order.
+    Map<String, byte[]> fingerprints = new TreeMap<>();
+    MessageDigest digest = Util.sha256();
+    for (JavaFile javaFile : javaFiles) {
+      checkNotNull(javaFile, "javaFiles contains null");
+      JavaFileObject source = javaFile.toJavaFileObject();
+      String uri = source.toUri().toString();
+      // The file object caches its rendered content, so javac won't render it again.
+      byte[] bytes;
+      try {
+        bytes = source.getCharContent(true).toString().getBytes(UTF_8);
+      } catch (IOException e) {
+        throw new AssertionError();
+      }
+      checkArgument(fingerprints.put(uri, digest.digest(bytes)) == null,
+          "more than one file for %s", uri);
+      sources.add(source);
+    }
+    checkArgument(!sources.isEmpty(), "javaFiles is empty");
+    for (Map.Entry<String, byte[]> entry : fingerprints.entrySet()) {
+      digest.update(entry.getKey().getBytes(UTF_8));
+      digest.update(entry.getValue());
+    }
+    ByteBuffer key = ByteBuffer.wrap(digest.digest());
+
+    Map<String, byte[]> result = cache.get(key);
+    if (result != null) {
+      hitCount++;
+      return result;
+    }
+    missCount++;
+
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    ClassOutputFileManager fileManager = new ClassOutputFileManager(standardFileManager);
+    JavaCompiler.CompilationTask task =
+        compiler.getTask(null, fileManager, diagnostics, options, null, sources);
+    if (!task.call()) {
+      throw new CompilationException(diagnostics.getDiagnostics());
+    }
+    result = Collections.unmodifiableMap(fileManager.classes);
+    cache.put(key, result);
+    return result;
+  }
+
+  /** Returns the number of batches whose class files were answered from the cache. */
+  public synchronized long hitCount() {
+    return hitCount;
+  }
+
+  /** Returns the number of batches that had to be compiled, including those that failed. */
+  public synchronized long missCount() {
+    return missCount;
+  }
+
+  /** Releases the compiler's file manager. */
+  @Override public synchronized void close() throws IOException {
+    standardFileManager.close();
+  }
+
+  /** A map that evicts its least recently used entry once it holds more than a maximum. */
+  private static final class LruMap<K, V> extends LinkedHashMap<K, V> {
+    private static final long serialVersionUID = 1L;
+
+    private final int maxSize;
+
+    LruMap(int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    @Override protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+      return size() > maxSize;
+    }
+  }
+
+  /** Thrown when a batch of files fails to compile. */
+  public static final class CompilationException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public final List<Diagnostic<? extends JavaFileObject>> diagnostics;
+
+    CompilationException(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+      super(message(diagnostics));
+      this.diagnostics = Util.immutableList(diagnostics);
+    }
+
+    private static String message(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+      StringBuilder result = new StringBuilder("compilation failed");
+      for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+        result.append('\n').append(diagnostic);
+      }
+      return result.toString();
+    }
+  }
+
+  /** Collects class files in memory instead of writing them to the class output directory. */
+  private static final class ClassOutputFileManager
+      extends ForwardingJavaFileManager<StandardJavaFileManager> {
+    final Map<String, byte[]> classes = new LinkedHashMap<>();
+
+    ClassOutputFileManager(StandardJavaFileManager fileManager) {
+      super(fileManager);
+    }
+
+    @Override public JavaFileObject getJavaFileForOutput(JavaFileManager.Location location,
+        final String className, Kind kind, FileObject sibling) {
+      checkArgument(kind == Kind.CLASS, "unexpected output %s for %s", kind, className);
+      URI uri = URI.create(className.replace('.', '/') + kind.extension);
+      return new SimpleJavaFileObject(uri, kind) {
+        @Override public OutputStream openOutputStream() {
+          return new ByteArrayOutputStream() {
+            @Override public void close() {
+              classes.put(className, toByteArray());
+            }
+          };
+        }
+      };
+    }
+  }
+
+  private static final class ByteArrayClassLoader extends ClassLoader {
+    private final Map<String, byte[]> classes;
+
+    ByteArrayClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+      super(parent);
+      this.classes = classes;
+    }
+
+    @Override protected Class<?> findClass(String name) throws ClassNotFoundException {
+      byte[] bytes = classes.get(name);
+      if (bytes == null) throw new ClassNotFoundException(name);
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import javax.annotation.processing.Filer;
+
+import static com.squareup.javapoet.Util.checkArgument;
+import static com.squareup.javapoet.Util.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/** Static methods for writing many {@link JavaFile JavaFiles} at once. */
+public final class JavaFiles {
+  private static final Executor DIRECT_EXECUTOR = new Executor() {
+    @Override public void execute(Runnable runnable) {
+      runnable.run();
+    }
+  };
+
+  private JavaFiles() {
+  }
+
+  /**
+   * Writes each of {@code javaFiles} to {@code directory} as UTF-8 using the standard directory
+   * structure. Files are rendered and written in parallel on {@code executor}, which may be any
+   * executor including one that starts a thread per task. This returns once every file has been
+   * attempted. The executor must eventually run every task it accepts; if it silently discards one,
+   * this waits forever. It may reject tasks by throwing, which fails the corresponding files.
+   *
+   * <p>Package directories are created once each, before any file is written. No two files may
+   * have the same package and type name, so the results don't depend on the order the executor
+   * runs the files in.
+   *
+   * @throws WriteException if any file couldn't be written. Every other file is still written.
+   * @throws IllegalArgumentException if two files would be written to the same path.
+   */
+  public static WriteResult writeAll(Iterable<JavaFile> javaFiles, Path directory,
+      Executor executor) throws IOException {
+    return writeAll(javaFiles, directory, executor, false);
+  }
+
+  /**
+   * Writes each of {@code javaFiles} to {@code directory} as UTF-8, skipping files whose contents
+   * are unchanged.
+   *
+   * @throws WriteException if any file couldn't be written. Every other file is still written.
+   * @see JavaFile#writeToIfChanged(Path)
+   */
+  public static WriteResult writeAllIfChanged(Iterable<JavaFile> javaFiles, Path directory)
+      throws IOException {
+    return writeAll(javaFiles, directory, DIRECT_EXECUTOR, true);
+  }
+
+  /**
+   * Writes each of {@code javaFiles} to {@code directory} as UTF-8 in parallel on {@code
+   * executor}, skipping files whose contents are unchanged.
+   *
+   * <p>As with {@link #writeAll(Iterable, Path, Executor)}, the executor must run every task it
+   * accepts.
+   *
+   * @see JavaFile#writeToIfChanged(Path)
+   */
+  public static WriteResult writeAllIfChanged(Iterable<JavaFile> javaFiles, Path directory,
+      Executor executor) throws IOException {
+    return writeAll(javaFiles, directory, executor, true);
+  }
+
+  private static WriteResult writeAll(Iterable<JavaFile> javaFiles, Path directory,
+      Executor executor, final boolean ifChanged) throws IOException {
+    checkNotNull(javaFiles, "javaFiles == null");
+    checkNotNull(directory, "directory == null");
+    checkNotNull(executor, "executor == null");
+    checkArgument(Files.notExists(directory) || Files.isDirectory(directory),
+        "path %s exists but is not a directory.", directory);
+
+    // Resolve every output path and create each package directory on this thread.
+    final List<JavaFile> files = new ArrayList<>();
+    final List<Path> paths = new ArrayList<>();
+    Map<String, Path> packageDirectories = new HashMap<>();
+    Set<Path> uniquePaths = new HashSet<>();
+    for (JavaFile javaFile : javaFiles) {
+      checkNotNull(javaFile, "javaFiles contains null");
+      Path packageDirectory = packageDirectories.get(javaFile.packageName);
+      if (packageDirectory == null) {
+        packageDirectory = JavaFile.packageDirectory(directory, javaFile.packageName);
+        Files.createDirectories(packageDirectory);
+        packageDirectories.put(javaFile.packageName, packageDirectory);
+      }
+      Path path = packageDirectory.resolve(javaFile.fileName());
+      checkArgument(uniquePaths.add(path), "more than one file would be written to %s", path);
+      files.add(javaFile);
+      paths.add(path);
+    }
+
+    final boolean[] written = new boolean[files.size()];
+    Exception[] failures = runAll(files.size(), executor, new Task() {
+      @Override public void run(int index) throws IOException {
+        JavaFile javaFile = files.get(index);
+        Path path = paths.get(index);
+        if (ifChanged) {
+          written[index] = javaFile.writeToFileIfChanged(path, UTF_8);
+        } else {
+          javaFile.writeToFile(path, UTF_8);
+          written[index] = true;
+        }
+      }
+    });
+
+    int writtenCount = 0;
+    int skippedCount = 0;
+    Map<Path, Exception> failuresByPath = new LinkedHashMap<>();
+    for (int i = 0; i < files.size(); i++) {
+      if (failures[i] != null) {
+        failuresByPath.put(paths.get(i), failures[i]);
+      } else if (written[i]) {
+        writtenCount++;
+      } else {
+        skippedCount++;
+      }
+    }
+    WriteResult result = new WriteResult(writtenCount, skippedCount);
+    if (!failuresByPath.isEmpty()) {
+      throw new WriteException(result, failuresByPath);
+    }
+    return result;
+  }
+
+  /**
+   * Renders each of {@code javaFiles} in parallel on {@code executor}, then writes them to {@code
+   * filer} on the calling thread in iteration order. Annotation processors must only use their
+   * filer from the processing thread, but rendering, which is most of the work, can happen
+   * anywhere. Each file keeps its originating elements. This holds every rendered file in memory
+   * at once. The executor must run every task it accepts; if it silently discards one, this waits
+   * forever.
+   *
+   * <p>No source file is created if any file fails to render. If a source file fails to be
+   * written, it is deleted and no further files are written, as with {@link
+   * JavaFile#writeTo(Filer)}.
+   */
+  public static void writeAll(Iterable<JavaFile> javaFiles, Filer filer, Executor executor)
+      throws IOException {
+    checkNotNull(javaFiles, "javaFiles == null");
+    checkNotNull(filer, "filer == null");
+    checkNotNull(executor, "executor == null");
+    final List<JavaFile> files = new ArrayList<>();
+    for (JavaFile javaFile : javaFiles) {
+      files.add(checkNotNull(javaFile, "javaFiles contains null"));
+    }
+
+    final String[] sources = new String[files.size()];
+    Exception[] failures = runAll(files.size(), executor, new Task() {
+      @Override public void run(int index) {
+        sources[index] = files.get(index).toString();
+      }
+    });
+    Exception failure = null;
+    for (Exception e : failures) {
+      if (e == null) continue;
+      if (failure == null) {
+        failure = e;
+      } else {
+        failure.addSuppressed(e);
+      }
+    }
+    if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+    if (failure != null) throw new IOException(failure);
+
+    for (int i = 0; i < files.size(); i++) {
+      files.get(i).writeTo(filer, sources[i]);
+      sources[i] = null; // Let the rendered source be collected.
+    }
+  }
+
+  private interface Task {
+    void run(int index) throws Exception;
+  }
+
+  /**
+   * Runs {@code task} for each index in {@code [0..count)} on {@code executor} and waits for all
+   * of them. Returns each index's exception, or null for the indices that succeeded. If any task
+   * throws an error, the first one is rethrown here once all tasks are done.
+   */
+  private static Exception[] runAll(int count, Executor executor, final Task task) {
+    // Results are stored by index; the latch makes them visible to this thread.
+    final Exception[] failures = new Exception[count];
+    final Error[] errors = new Error[count];
+    final CountDownLatch done = new CountDownLatch(count);
+    for (int i = 0; i < count; i++) {
+      final int index = i;
+      Runnable runnable = new Runnable() {
+        @Override public void run() {
+          try {
+            task.run(index);
+          } catch (Exception e) {
+            failures[index] = e;
+          } catch (Error e) {
+            errors[index] = e;
+          } finally {
+            done.countDown();
+          }
+        }
+      };
+      try {
+        executor.execute(runnable);
+      } catch (RuntimeException e) {
+        failures[index] = e;
+        done.countDown();
+      }
+    }
+    awaitUninterruptibly(done);
+
+    Error error = null;
+    for (Error e : errors) {
+      if (e == null) continue;
+      if (error == null) {
+        error = e;
+      } else {
+        error.addSuppressed(e);
+      }
+    }
+    if (error != null) throw error;
+    return failures;
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        latch.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** The number of files that a batch write wrote and skipped. */
+  public static final class WriteResult {
+    /** Files that were created or whose contents changed. */
+    public final int writtenCount;
+    /** Files that already had the expected contents and were left untouched. */
+    public final int skippedCount;
+
+    WriteResult(int writtenCount, int skippedCount) {
+      this.writtenCount = writtenCount;
+      this.skippedCount = skippedCount;
+    }
+
+    @Override public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null) return false;
+      if (getClass() != o.getClass()) return false;
+      WriteResult that = (WriteResult) o;
+      return writtenCount == that.writtenCount && skippedCount == that.skippedCount;
+    }
+
+    @Override public int hashCode() {
+      return 31 * writtenCount + skippedCount;
+    }
+
+    @Override public String toString() {
+      return "WriteResult{written=" + writtenCount + ", skipped=" + skippedCount + "}";
+    }
+  }
+
+  /** Thrown when some files of a batch couldn't be written. */
+  public static final class WriteException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    /** The files that were written and skipped successfully. */
+    public final WriteResult result;
+    /** The cause of each failure, keyed by the path that couldn't be written, in input order. */
+    public final Map<Path, Exception> failures;
+
+    WriteException(WriteResult result, Map<Path, Exception> failures) {
+      super("could not write " + failures.size() + " of "
+          + (result.writtenCount + result.skippedCount + failures.size()) + " files, including "
+          + failures.keySet().iterator().next(), failures.values().iterator().next());
+      this.result = result;
+      this.failures = Collections.unmodifiableMap(failures);
+      for (Exception failure : failures.values()) {
+        if (failure != getCause()) addSuppressed(failure);
+      }
+    }
+  }
+}
@@ -23,6 +23,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.ExecutableElement;
@@ -32,7 +33,6 @@ import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.ExecutableType;
 import javax.lang.model.type.TypeMirror;
-import javax.lang.model.type.TypeVariable;
 import javax.lang.model.util.Types;
 
 import static com.squareup.javapoet.Util.checkArgument;
@@ -55,17 +55,20 @@ public final class MethodSpec {
   public final CodeBlock code;
   public final CodeBlock defaultValue;
 
+  /** Lazily computed hash code, or 0 if it hasn't been computed yet. */
+  private int hashCode;
+
   private MethodSpec(Builder builder) {
-    CodeBlock code = builder.code.build();
+    CodeBlock code = builder.code != null ? builder.code.build() : CodeBlock.EMPTY;
     checkArgument(code.isEmpty() || !builder.modifiers.contains(Modifier.ABSTRACT),
         "abstract method %s cannot have code", builder.name);
     checkArgument(!builder.varargs || lastParameterIsArray(builder.parameters),
         "last parameter of varargs method %s must be an array", builder.name);
 
     this.name = checkNotNull(builder.name, "name == null");
-    this.javadoc = builder.javadoc.build();
+    this.javadoc = builder.javadoc != null ? builder.javadoc.build() : CodeBlock.EMPTY;
     this.annotations = Util.immutableList(builder.annotations);
-    this.modifiers = Util.immutableSet(builder.modifiers);
+    this.modifiers = ModifierSet.of(builder.modifiers);
     this.typeVariables = Util.immutableList(builder.typeVariables);
     this.returnType = builder.returnType;
     this.parameters = Util.immutableList(builder.parameters);
@@ -151,11 +154,43 @@ public final class MethodSpec {
     if (this == o) return true;
     if (o == null) return false;
     if (getClass() != o.getClass()) return false;
-    return toString().equals(o.toString());
+    MethodSpec that = (MethodSpec) o;
+    if (hashCode != 0 && that.hashCode != 0 && hashCode != that.hashCode) return false;
+    return name.equals(that.name)
+        && varargs == that.varargs
+        && Objects.equals(returnType, that.returnType)
+        && modifiers.equals(that.modifiers)
+        && parameters.equals(that.parameters)
+        && typeVariables.equals(that.typeVariables)
+        && exceptions.equals(that.exceptions) // A list: the throws clause is emitted in order.
+        && annotations.equals(that.annotations)
+        && javadoc.equals(that.javadoc)
+        && code.equals(that.code)
+        && defaultValueOrEmpty().equals(that.defaultValueOrEmpty());
   }
 
   @Override public int hashCode() {
-    return toString().hashCode();
+    int result = hashCode;
+    if (result == 0) {
+      result = name.hashCode();
+      result = 31 * result + javadoc.hashCode();
+      result = 31 * result + annotations.hashCode();
+      result = 31 * result + Util.modifiersHashCode(modifiers);
+      result = 31 * result + typeVariables.hashCode();
+      result = 31 * result + Objects.hashCode(returnType);
+      result = 31 * result + parameters.hashCode();
+      result = 31 * result + (varargs ? 1 : 0);
+      result = 31 * result + exceptions.hashCode();
+      result = 31 * result + code.hashCode();
+      result = 31 * result + defaultValueOrEmpty().hashCode();
+      hashCode = result;
+    }
+    return result;
+  }
+
+  /** Returns the default value, treating a missing one like the empty code block it emits as. */
+  private CodeBlock defaultValueOrEmpty() {
+    return defaultValue != null ? defaultValue : CodeBlock.EMPTY;
   }
 
   @Override public String toString() {
@@ -187,7 +222,18 @@ public final class MethodSpec {
    * parameters of the overridden method. Since JavaPoet 1.8 annotations must be added separately.
    */
   public static Builder overriding(ExecutableElement method) {
+    return overriding(method, new TypeNames());
+  }
+
+  /**
+   * Returns a new method spec builder that overrides {@code method}, converting its types with
+   * {@code typeNames}.
+   *
+   * @see #overriding(ExecutableElement)
+   */
+  public static Builder overriding(ExecutableElement method, TypeNames typeNames) {
     checkNotNull(method, "method == null");
+    checkNotNull(typeNames, "typeNames == null");
 
     Set<Modifier> modifiers = method.getModifiers();
     if (modifiers.contains(Modifier.PRIVATE)
@@ -207,15 +253,14 @@ public final class MethodSpec {
     methodBuilder.addModifiers(modifiers);
 
     for (TypeParameterElement typeParameterElement : method.getTypeParameters()) {
-      TypeVariable var = (TypeVariable) typeParameterElement.asType();
-      methodBuilder.addTypeVariable(TypeVariableName.get(var));
+      methodBuilder.addTypeVariable(typeNames.get(typeParameterElement));
     }
 
-    methodBuilder.returns(TypeName.get(method.getReturnType()));
+    methodBuilder.returns(typeNames.get(method.getReturnType()));
 
     List<? extends VariableElement> parameters = method.getParameters();
     for (VariableElement parameter : parameters) {
-      TypeName type = TypeName.get(parameter.asType());
+      TypeName type = typeNames.get(parameter.asType());
       String name = parameter.getSimpleName().toString();
       Set<Modifier> parameterModifiers = parameter.getModifiers();
       ParameterSpec.Builder parameterBuilder = ParameterSpec.builder(type, name)
@@ -225,7 +270,7 @@ public final class MethodSpec {
     methodBuilder.varargs(method.isVarArgs());
 
     for (TypeMirror thrownType : method.getThrownTypes()) {
-      methodBuilder.addException(TypeName.get(thrownType));
+      methodBuilder.addException(typeNames.get(thrownType));
     }
 
     return methodBuilder;
@@ -245,15 +290,26 @@ public final class MethodSpec {
    */
   public static Builder overriding(
       ExecutableElement method, DeclaredType enclosing, Types types) {
+    return overriding(method, enclosing, types, new TypeNames());
+  }
+
+  /**
+   * Returns a new method spec builder that overrides {@code method} as a member of {@code
+   * enclosing}, converting its types with {@code typeNames}.
+   *
+   * @see #overriding(ExecutableElement, DeclaredType, Types)
+   */
+  public static Builder overriding(ExecutableElement method, DeclaredType enclosing, Types types,
+      TypeNames typeNames) {
     ExecutableType executableType = (ExecutableType) types.asMemberOf(enclosing, method);
     List<? extends TypeMirror> resolvedParameterTypes = executableType.getParameterTypes();
     TypeMirror resolvedReturnType = executableType.getReturnType();
 
-    Builder builder = overriding(method);
-    builder.returns(TypeName.get(resolvedReturnType));
+    Builder builder = overriding(method, typeNames);
+    builder.returns(typeNames.get(resolvedReturnType));
     for (int i = 0, size = builder.parameters.size(); i < size; i++) {
       ParameterSpec parameter = builder.parameters.get(i);
-      TypeName type = TypeName.get(resolvedParameterTypes.get(i));
+      TypeName type = typeNames.get(resolvedParameterTypes.get(i));
       builder.parameters.set(i, parameter.toBuilder(type, parameter.name).build());
     }
 
@@ -262,14 +318,14 @@ public final class MethodSpec {
 
   public Builder toBuilder() {
     Builder builder = new Builder(name);
-    builder.javadoc.add(javadoc);
+    if (!javadoc.isEmpty()) builder.javadoc = javadoc.toBuilder();
     builder.annotations.addAll(annotations);
     builder.modifiers.addAll(modifiers);
     builder.typeVariables.addAll(typeVariables);
     builder.returnType = returnType;
     builder.parameters.addAll(parameters);
     builder.exceptions.addAll(exceptions);
-    builder.code.add(code);
+    if (!code.isEmpty()) builder.code = code.toBuilder();
     builder.varargs = varargs;
     builder.defaultValue = defaultValue;
     return builder;
@@ -278,14 +334,15 @@ public final class MethodSpec {
   public static final class Builder {
     private final String name;
 
-    private final CodeBlock.Builder javadoc = CodeBlock.builder();
-    private final List<AnnotationSpec> annotations = new ArrayList<>();
+    // Code builders are allocated on first use.
+    private CodeBlock.Builder javadoc;
+    private final List<AnnotationSpec> annotations = new SharedList.Builder<>();
     private final List<Modifier> modifiers = new ArrayList<>();
-    private List<TypeVariableName> typeVariables = new ArrayList<>();
+    private List<TypeVariableName> typeVariables = new SharedList.Builder<>();
     private TypeName returnType;
-    private final List<ParameterSpec> parameters = new ArrayList<>();
+    private final List<ParameterSpec> parameters = new SharedList.Builder<>();
     private final Set<TypeName> exceptions = new LinkedHashSet<>();
-    private final CodeBlock.Builder code = CodeBlock.builder();
+    private CodeBlock.Builder code;
     private boolean varargs;
     private CodeBlock defaultValue;
 
@@ -297,7 +354,7 @@ public final class MethodSpec {
     }
 
     public Builder addJavadoc(String format, Object... args) {
-      javadoc.add(format, args);
+      javadoc().add(format, args);
       return this;
     }
 
@@ -407,17 +464,17 @@ public final class MethodSpec {
     }
 
     public Builder addCode(String format, Object... args) {
-      code.add(format, args);
+      code().add(format, args);
       return this;
     }
 
     public Builder addCode(CodeBlock codeBlock) {
-      code.add(codeBlock);
+      code().add(codeBlock);
       return this;
     }
 
     public Builder addComment(String format, Object... args) {
-      code.add("// " + format + "\n", args);
+      code().add("// " + format + "\n", args);
       return this;
     }
 
@@ -436,7 +493,7 @@ public final class MethodSpec {
      * Shouldn't contain braces or newline characters.
      */
     public Builder beginControlFlow(String controlFlow, Object... args) {
-      code.beginControlFlow(controlFlow, args);
+      code().beginControlFlow(controlFlow, args);
       return this;
     }
 
@@ -445,12 +502,12 @@ public final class MethodSpec {
      *     Shouldn't contain braces or newline characters.
      */
     public Builder nextControlFlow(String controlFlow, Object... args) {
-      code.nextControlFlow(controlFlow, args);
+      code().nextControlFlow(controlFlow, args);
       return this;
     }
 
     public Builder endControlFlow() {
-      code.endControlFlow();
+      code().endControlFlow();
       return this;
     }
 
@@ -459,15 +516,25 @@ public final class MethodSpec {
      *     "while(foo == 20)". Only used for "do/while" control flows.
      */
     public Builder endControlFlow(String controlFlow, Object... args) {
-      code.endControlFlow(controlFlow, args);
+      code().endControlFlow(controlFlow, args);
       return this;
     }
 
     public Builder addStatement(String format, Object... args) {
-      code.addStatement(format, args);
+      code().addStatement(format, args);
       return this;
     }
 
+    private CodeBlock.Builder javadoc() {
+      if (javadoc == null) javadoc = CodeBlock.builder();
+      return javadoc;
+    }
+
+    private CodeBlock.Builder code() {
+      if (code == null) code = CodeBlock.builder();
+      return code;
+    }
+
     public MethodSpec build() {
       return new MethodSpec(this);
     }
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.lang.model.element.Modifier;
+
+import static com.squareup.javapoet.Util.checkArgument;
+
+/**
+ * An immutable set of modifiers stored as a bitmask of their ordinals. Like {@link
+ * java.util.EnumSet} it iterates in declaration order, which is also the order modifiers are
+ * emitted in. Instances are interned, so specs with the same modifiers share one set, and each
+ * set's source code is rendered once.
+ */
+final class ModifierSet extends AbstractSet<Modifier> {
+  private static final Modifier[] MODIFIERS = Modifier.values();
+  private static final ConcurrentMap<Long, ModifierSet> INSTANCES = new ConcurrentHashMap<>();
+
+  static final ModifierSet EMPTY = get(0L);
+
+  final long bits;
+  /** These modifiers as source code, like {@code "public static "}. */
+  final String source;
+
+  private ModifierSet(long bits) {
+    this.bits = bits;
+    StringBuilder source = new StringBuilder();
+    for (Modifier modifier : this) {
+      source.append(modifier.name().toLowerCase(Locale.US)).append(' ');
+    }
+    this.source = source.toString();
+  }
+
+  static ModifierSet of(Modifier... modifiers) {
+    long bits = 0L;
+    for (Modifier modifier : modifiers) {
+      bits |= bit(modifier);
+    }
+    return get(bits);
+  }
+
+  /** Returns a set of {@code modifiers}, or {@code modifiers} itself if it is a modifier set. */
+  static ModifierSet of(Collection<Modifier> modifiers) {
+    if (modifiers instanceof ModifierSet) return (ModifierSet) modifiers;
+    return get(bits(modifiers));
+  }
+
+  static long bits(Collection<Modifier> modifiers) {
+    if (modifiers instanceof ModifierSet) return ((ModifierSet) modifiers).bits;
+    long bits = 0L;
+    for (Modifier modifier : modifiers) {
+      bits |= bit(modifier);
+    }
+    return bits;
+  }
+
+  private static long bit(Modifier modifier) {
+    checkArgument(modifier != null, "modifiers contain null");
+    return 1L << modifier.ordinal();
+  }
+
+  static ModifierSet get(long bits) {
+    ModifierSet result = INSTANCES.get(bits);
+    if (result == null) {
+      ModifierSet created = new ModifierSet(bits);
+      result = INSTANCES.putIfAbsent(bits, created);
+      if (result == null) result = created;
+    }
+    return result;
+  }
+
+  /** Returns the source code for these modifiers, omitting those in {@code implicitModifiers}. */
+  String source(Set<Modifier> implicitModifiers) {
+    long implicitBits = bits(implicitModifiers);
+    return (bits & implicitBits) == 0L ? source : get(bits & ~implicitBits).source;
+  }
+
+  @Override public boolean contains(Object o) {
+    return o instanceof Modifier && (bits & (1L << ((Modifier) o).ordinal())) != 0L;
+  }
+
+  @Override public boolean containsAll(Collection<?> c) {
+    if (c instanceof ModifierSet) {
+      long other = ((ModifierSet) c).bits;
+      return (bits & other) == other;
+    }
+    return super.containsAll(c);
+  }
+
+  @Override public boolean isEmpty() {
+    return bits == 0L;
+  }
+
+  @Override public int size() {
+    return Long.bitCount(bits);
+  }
+
+  @Override public Iterator<Modifier> iterator() {
+    return new Iterator<Modifier>() {
+      long remaining = bits;
+
+      @Override public boolean hasNext() {
+        return remaining != 0L;
+      }
+
+      @Override public Modifier next() {
+        if (remaining == 0L) throw new NoSuchElementException();
+        int ordinal = Long.numberOfTrailingZeros(remaining);
+        remaining &= remaining - 1;
+        return MODIFIERS[ordinal];
+      }
+
+      @Override public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override public boolean equals(Object o) {
+    if (o instanceof ModifierSet) return bits == ((ModifierSet) o).bits;
+    return super.equals(o);
+  }
+
+  @Override public int hashCode() {
+    return super.hashCode(); // The Set contract requires the sum of the elements' hash codes.
+  }
+}
@@ -35,10 +35,13 @@ public final class ParameterSpec {
   public final Set<Modifier> modifiers;
   public final TypeName type;
 
+  /** Lazily computed hash code, or 0 if it hasn't been computed yet. */
+  private int hashCode;
+
   private ParameterSpec(Builder builder) {
     this.name = checkNotNull(builder.name, "name == null");
     this.annotations = Util.immutableList(builder.annotations);
-    this.modifiers = Util.immutableSet(builder.modifiers);
+    this.modifiers = ModifierSet.of(builder.modifiers);
     this.type = checkNotNull(builder.type, "type == null");
   }
 
@@ -60,11 +63,24 @@ public final class ParameterSpec {
     if (this == o) return true;
     if (o == null) return false;
     if (getClass() != o.getClass()) return false;
-    return toString().equals(o.toString());
+    ParameterSpec that = (ParameterSpec) o;
+    if (hashCode != 0 && that.hashCode != 0 && hashCode != that.hashCode) return false;
+    return name.equals(that.name)
+        && type.equals(that.type)
+        && modifiers.equals(that.modifiers)
+        && annotations.equals(that.annotations);
   }
 
   @Override public int hashCode() {
-    return toString().hashCode();
+    int result = hashCode;
+    if (result == 0) {
+      result = name.hashCode();
+      result = 31 * result + annotations.hashCode();
+      result = 31 * result + Util.modifiersHashCode(modifiers);
+      result = 31 * result + type.hashCode();
+      hashCode = result;
+    }
+    return result;
   }
 
   @Override public String toString() {
@@ -104,7 +120,7 @@ public final class ParameterSpec {
     private final TypeName type;
     private final String name;
 
-    private final List<AnnotationSpec> annotations = new ArrayList<>();
+    private final List<AnnotationSpec> annotations = new SharedList.Builder<>();
     private final List<Modifier> modifiers = new ArrayList<>();
 
     private Builder(TypeName type, String name) {
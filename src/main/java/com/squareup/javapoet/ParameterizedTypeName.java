@@ -21,7 +21,6 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -29,7 +28,7 @@ import static com.squareup.javapoet.Util.checkArgument;
 import static com.squareup.javapoet.Util.checkNotNull;
 
 public final class ParameterizedTypeName extends TypeName {
-  private final ParameterizedTypeName enclosingType;
+  final ParameterizedTypeName enclosingType;
   public final ClassName rawType;
   public final List<TypeName> typeArguments;
 
@@ -63,6 +62,30 @@ public final class ParameterizedTypeName extends TypeName {
         enclosingType, rawType, typeArguments, new ArrayList<AnnotationSpec>());
   }
 
+  /**
+   * Nested types are emitted as their enclosing type followed by their simple name, so only the
+   * simple name of their raw type counts.
+   */
+  @Override boolean equalsIgnoringAnnotations(TypeName that) {
+    ParameterizedTypeName type = (ParameterizedTypeName) that;
+    if (enclosingType != null) {
+      if (!enclosingType.equals(type.enclosingType)
+          || !rawType.simpleName().equals(type.rawType.simpleName())) {
+        return false;
+      }
+    } else if (type.enclosingType != null || !rawType.equals(type.rawType)) {
+      return false;
+    }
+    return typeArguments.equals(type.typeArguments);
+  }
+
+  @Override int hashCodeIgnoringAnnotations() {
+    int result = enclosingType != null
+        ? 31 * enclosingType.hashCode() + rawType.simpleName().hashCode()
+        : rawType.hashCode();
+    return 31 * result + typeArguments.hashCode();
+  }
+
   @Override CodeWriter emit(CodeWriter out) throws IOException {
     if (enclosingType != null) {
       enclosingType.emitAnnotations(out);
@@ -118,7 +141,7 @@ public final class ParameterizedTypeName extends TypeName {
 
   /** Returns a parameterized type equivalent to {@code type}. */
   public static ParameterizedTypeName get(ParameterizedType type) {
-    return get(type, new LinkedHashMap<Type, TypeVariableName>());
+    return (ParameterizedTypeName) GenericTypeCache.get(type);
   }
 
   /** Returns a parameterized type equivalent to {@code type}. */
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Replaces a file with the bytes written to this channel, unless the file already has exactly
+ * those bytes. Written bytes are compared against the file as they arrive. At the first
+ * difference, a temporary file in the same directory is started with a copy of the matching
+ * prefix, and it receives everything written after that. {@link #commit} then moves it over the
+ * original file, so readers never see a partially written file and a failure leaves the original
+ * untouched.
+ *
+ * <p>Closing this channel only stops it from accepting writes, so that a writer wrapping it can be
+ * closed before {@link #commit}. Call {@link #release} when done to clean up.
+ */
+final class ReplacingFileChannel implements WritableByteChannel {
+  private final Path path;
+  /** The file being replaced, or null if there isn't one. */
+  private final FileChannel existing;
+  private final ByteBuffer existingBuffer;
+  /** The number of written bytes that match the existing file. */
+  private long matchedCount;
+  private Path tempPath;
+  /** The replacement file, or null until a difference is found. */
+  private FileChannel temp;
+  private boolean open = true;
+
+  ReplacingFileChannel(Path path) throws IOException {
+    this.path = path;
+    FileChannel existing;
+    try {
+      existing = FileChannel.open(path, READ);
+    } catch (NoSuchFileException e) {
+      existing = null;
+    }
+    this.existing = existing;
+    this.existingBuffer = existing != null ? ByteBuffer.allocate(8192) : null;
+  }
+
+  @Override public int write(ByteBuffer source) throws IOException {
+    if (!open) throw new ClosedChannelException();
+    int count = source.remaining();
+    if (temp == null) {
+      if (matches(source)) {
+        matchedCount += count;
+        source.position(source.limit());
+        return count;
+      }
+      startReplacement();
+    }
+    while (source.hasRemaining()) {
+      temp.write(source);
+    }
+    return count;
+  }
+
+  /** Returns true if the file continues with the remaining bytes of {@code source}. */
+  private boolean matches(ByteBuffer source) throws IOException {
+    if (existing == null) return false;
+    int offset = source.position();
+    int end = source.limit();
+    while (offset < end) {
+      existingBuffer.clear();
+      existingBuffer.limit(Math.min(existingBuffer.capacity(), end - offset));
+      int count = existing.read(existingBuffer, matchedCount + offset - source.position());
+      if (count <= 0) return false;
+      for (int i = 0; i < count; i++) {
+        if (existingBuffer.get(i) != source.get(offset + i)) return false;
+      }
+      offset += count;
+    }
+    return true;
+  }
+
+  /** Creates the temporary file and copies the matched prefix of the existing file into it. */
+  private void startReplacement() throws IOException {
+    String prefix = "." + path.getFileName() + ".";
+    while (temp == null) {
+      tempPath = path.resolveSibling(
+          prefix + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+      try {
+        temp = FileChannel.open(tempPath, CREATE_NEW, WRITE);
+      } catch (FileAlreadyExistsException e) {
+        tempPath = null;
+      }
+    }
+    for (long copied = 0; copied < matchedCount; ) {
+      copied += existing.transferTo(copied, matchedCount - copied, temp);
+    }
+  }
+
+  @Override public boolean isOpen() {
+    return open;
+  }
+
+  @Override public void close() {
+    open = false;
+  }
+
+  /**
+   * Replaces the file with the bytes written to this channel. Returns false without touching the
+   * file if it already had exactly those bytes.
+   */
+  boolean commit() throws IOException {
+    if (temp == null) {
+      if (existing != null && existing.size() == matchedCount) return false;
+      startReplacement(); // The file is missing, or it continues past the written bytes.
+    }
+    temp.close();
+    try {
+      Files.move(tempPath, path, ATOMIC_MOVE, REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tempPath, path, REPLACE_EXISTING);
+    }
+    tempPath = null;
+    return true;
+  }
+
+  /** Closes the files opened by this channel and deletes the temporary file if it remains. */
+  void release() throws IOException {
+    open = false;
+    try {
+      if (existing != null) existing.close();
+      if (temp != null) temp.close();
+    } finally {
+      if (tempPath != null) Files.deleteIfExists(tempPath);
+    }
+  }
+}
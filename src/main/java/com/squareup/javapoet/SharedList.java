@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An immutable list that shares its backing array with the lists it was built from and the lists
+ * built from it. Spec builders collect members in a {@link Builder}, which makes both {@code
+ * build()} and {@code toBuilder()} O(1):
+ *
+ * <ul>
+ *   <li>{@link Builder#build()} returns a view of the builder's first {@code size} elements.
+ *   <li>{@link Builder#addAll} into an empty builder adopts a shared list's array.
+ *   <li>{@link Builder#add} writes into the next free slot of the shared array if no other list
+ *       has claimed it, and copies the array otherwise.
+ * </ul>
+ *
+ * <p>So a chain like {@code spec.toBuilder().addMethod(m).build()} appends in amortized constant
+ * time. Slots are claimed with a compare-and-set, so builders forked from the same list on
+ * different threads never write to the same slot.
+ */
+final class SharedList<E> extends AbstractList<E> implements RandomAccess {
+  private static final Object[] EMPTY_ARRAY = {};
+
+  private final Storage storage;
+  private final int size;
+
+  private SharedList(Storage storage, int size) {
+    this.storage = storage;
+    this.size = size;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override public E get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("index " + index + " for size " + size);
+    }
+    return (E) storage.elements[index];
+  }
+
+  @Override public int size() {
+    return size;
+  }
+
+  /** An array and the number of its slots that have been written. */
+  private static final class Storage {
+    final Object[] elements;
+    final AtomicInteger claimed;
+
+    Storage(Object[] elements, int claimed) {
+      this.elements = elements;
+      this.claimed = new AtomicInteger(claimed);
+    }
+
+    /** Returns true if the caller may write to slot {@code index}. */
+    boolean claim(int index) {
+      return index < elements.length && claimed.compareAndSet(index, index + 1);
+    }
+  }
+
+  /** A mutable list that produces shared lists. It is not thread-safe. */
+  static final class Builder<E> extends AbstractList<E> implements RandomAccess {
+    private Storage storage = new Storage(EMPTY_ARRAY, 0);
+    private int size;
+    /** True if no shared list can see this builder's slots, so they may be overwritten. */
+    private boolean exclusive = true;
+
+    @SuppressWarnings("unchecked")
+    @Override public E get(int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("index " + index + " for size " + size);
+      }
+      return (E) storage.elements[index];
+    }
+
+    @Override public int size() {
+      return size;
+    }
+
+    @Override public boolean add(E element) {
+      if (!storage.claim(size)) {
+        Object[] elements = Arrays.copyOf(storage.elements, Math.max(8, size * 2));
+        storage = new Storage(elements, size + 1);
+        exclusive = true;
+      }
+      storage.elements[size++] = element;
+      modCount++;
+      return true;
+    }
+
+    @Override public boolean addAll(Collection<? extends E> collection) {
+      if (size == 0 && collection instanceof SharedList) {
+        SharedList<?> shared = (SharedList<?>) collection;
+        storage = shared.storage;
+        size = shared.size;
+        exclusive = false;
+        modCount++;
+        return size != 0;
+      }
+      return super.addAll(collection);
+    }
+
+    @Override public E set(int index, E element) {
+      E result = get(index);
+      if (!exclusive) {
+        Object[] elements = Arrays.copyOf(storage.elements, Math.max(8, size * 2));
+        storage = new Storage(elements, size);
+        exclusive = true;
+      }
+      storage.elements[index] = element;
+      return result;
+    }
+
+    /** Returns an immutable list of this builder's current elements. */
+    SharedList<E> build() {
+      exclusive = false;
+      return new SharedList<>(storage, size);
+    }
+  }
+}
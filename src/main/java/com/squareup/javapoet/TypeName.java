@@ -23,6 +23,7 @@ import java.lang.reflect.TypeVariable;
 import java.lang.reflect.WildcardType;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -87,6 +88,37 @@ public class TypeName {
   private static final ClassName BOXED_FLOAT = ClassName.get("java.lang", "Float");
   private static final ClassName BOXED_DOUBLE = ClassName.get("java.lang", "Double");
 
+  /** Primitive types and void, keyed by their boxed types. */
+  private static final Map<TypeName, TypeName> UNBOXED_TYPES = new HashMap<>();
+  static {
+    UNBOXED_TYPES.put(BOXED_VOID, VOID);
+    UNBOXED_TYPES.put(BOXED_BOOLEAN, BOOLEAN);
+    UNBOXED_TYPES.put(BOXED_BYTE, BYTE);
+    UNBOXED_TYPES.put(BOXED_SHORT, SHORT);
+    UNBOXED_TYPES.put(BOXED_INT, INT);
+    UNBOXED_TYPES.put(BOXED_LONG, LONG);
+    UNBOXED_TYPES.put(BOXED_CHAR, CHAR);
+    UNBOXED_TYPES.put(BOXED_FLOAT, FLOAT);
+    UNBOXED_TYPES.put(BOXED_DOUBLE, DOUBLE);
+  }
+
+  /** Type names of classes, including primitive and array classes, keyed by class. */
+  private static final ClassValue<TypeName> CLASS_TYPE_NAMES = new ClassValue<TypeName>() {
+    @Override protected TypeName computeValue(Class<?> type) {
+      if (type == void.class) return VOID;
+      if (type == boolean.class) return BOOLEAN;
+      if (type == byte.class) return BYTE;
+      if (type == short.class) return SHORT;
+      if (type == int.class) return INT;
+      if (type == long.class) return LONG;
+      if (type == char.class) return CHAR;
+      if (type == float.class) return FLOAT;
+      if (type == double.class) return DOUBLE;
+      if (type.isArray()) return ArrayTypeName.of(get(type.getComponentType()));
+      return ClassName.get(type);
+    }
+  };
+
   /** The name of this type if it is a keyword, or null. */
   private final String keyword;
   public final List<AnnotationSpec> annotations;
@@ -94,6 +126,9 @@ public class TypeName {
   /** Lazily-initialized toString of this type name. */
   private String cachedString;
 
+  /** Lazily-initialized hash code of this type name, or 0 if it hasn't been computed yet. */
+  private int cachedHashCode;
+
   private TypeName(String keyword) {
     this(keyword, new ArrayList<AnnotationSpec>());
   }
@@ -144,14 +179,8 @@ public class TypeName {
    * other types types including unboxed primitives and {@code java.lang.Void}.
    */
   public boolean isBoxedPrimitive() {
-    return this.equals(BOXED_BOOLEAN)
-        || this.equals(BOXED_BYTE)
-        || this.equals(BOXED_SHORT)
-        || this.equals(BOXED_INT)
-        || this.equals(BOXED_LONG)
-        || this.equals(BOXED_CHAR)
-        || this.equals(BOXED_FLOAT)
-        || this.equals(BOXED_DOUBLE);
+    TypeName unboxed = UNBOXED_TYPES.get(this);
+    return unboxed != null && unboxed != VOID;
   }
 
   /**
@@ -180,27 +209,41 @@ public class TypeName {
    */
   public TypeName unbox() {
     if (keyword != null) return this; // Already unboxed.
-    if (this.equals(BOXED_VOID)) return VOID;
-    if (this.equals(BOXED_BOOLEAN)) return BOOLEAN;
-    if (this.equals(BOXED_BYTE)) return BYTE;
-    if (this.equals(BOXED_SHORT)) return SHORT;
-    if (this.equals(BOXED_INT)) return INT;
-    if (this.equals(BOXED_LONG)) return LONG;
-    if (this.equals(BOXED_CHAR)) return CHAR;
-    if (this.equals(BOXED_FLOAT)) return FLOAT;
-    if (this.equals(BOXED_DOUBLE)) return DOUBLE;
+    TypeName unboxed = UNBOXED_TYPES.get(this);
+    if (unboxed != null) return unboxed;
     throw new UnsupportedOperationException("cannot unbox " + this);
   }
 
+  /** Returns true if {@code o} is a type name that renders the same as this one. */
   @Override public final boolean equals(Object o) {
     if (this == o) return true;
     if (o == null) return false;
     if (getClass() != o.getClass()) return false;
-    return toString().equals(o.toString());
+    TypeName that = (TypeName) o;
+    return annotations.equals(that.annotations) && equalsIgnoringAnnotations(that);
   }
 
   @Override public final int hashCode() {
-    return toString().hashCode();
+    int result = cachedHashCode;
+    if (result == 0) {
+      result = 31 * annotations.hashCode() + hashCodeIgnoringAnnotations();
+      cachedHashCode = result;
+    }
+    return result;
+  }
+
+  /**
+   * Returns true if {@code that}, which is an instance of the same class, renders the same as this
+   * type apart from the annotations on the type itself. Types that render the same must be equal,
+   * so anything that isn't emitted, like the bounds of a type variable, must be ignored.
+   */
+  boolean equalsIgnoringAnnotations(TypeName that) {
+    return keyword.equals(that.keyword);
+  }
+
+  /** Returns a hash code consistent with {@link #equalsIgnoringAnnotations}. */
+  int hashCodeIgnoringAnnotations() {
+    return keyword.hashCode();
   }
 
   @Override public final String toString() {
@@ -235,11 +278,17 @@ public class TypeName {
 
   /** Returns a type name equivalent to {@code mirror}. */
   public static TypeName get(TypeMirror mirror) {
-    return get(mirror, new LinkedHashMap<TypeParameterElement, TypeVariableName>());
+    return get(mirror, new LinkedHashMap<TypeParameterElement, TypeVariableName>(), null);
   }
 
+  /** Returns a type name for {@code mirror}, consulting {@code cache} if it is non-null. */
   static TypeName get(TypeMirror mirror,
-      final Map<TypeParameterElement, TypeVariableName> typeVariables) {
+      Map<TypeParameterElement, TypeVariableName> typeVariables, TypeNames cache) {
+    return cache != null ? cache.get(mirror) : convert(mirror, typeVariables, null);
+  }
+
+  static TypeName convert(TypeMirror mirror,
+      final Map<TypeParameterElement, TypeVariableName> typeVariables, final TypeNames cache) {
     return mirror.accept(new SimpleTypeVisitor7<TypeName, Void>() {
       @Override public TypeName visitPrimitive(PrimitiveType t, Void p) {
         switch (t.getKind()) {
@@ -265,12 +314,13 @@ public class TypeName {
       }
 
       @Override public TypeName visitDeclared(DeclaredType t, Void p) {
-        ClassName rawType = ClassName.get((TypeElement) t.asElement());
+        TypeElement element = (TypeElement) t.asElement();
+        ClassName rawType = cache != null ? cache.get(element) : ClassName.get(element);
         TypeMirror enclosingType = t.getEnclosingType();
         TypeName enclosing =
             (enclosingType.getKind() != TypeKind.NONE)
                     && !t.asElement().getModifiers().contains(Modifier.STATIC)
-                ? enclosingType.accept(this, null)
+                ? get(enclosingType, typeVariables, cache)
                 : null;
         if (t.getTypeArguments().isEmpty() && !(enclosing instanceof ParameterizedTypeName)) {
           return rawType;
@@ -278,7 +328,7 @@ public class TypeName {
 
         List<TypeName> typeArgumentNames = new ArrayList<>();
         for (TypeMirror mirror : t.getTypeArguments()) {
-          typeArgumentNames.add(get(mirror, typeVariables));
+          typeArgumentNames.add(get(mirror, typeVariables, cache));
         }
         return enclosing instanceof ParameterizedTypeName
             ? ((ParameterizedTypeName) enclosing).nestedClass(
@@ -291,15 +341,15 @@ public class TypeName {
       }
 
       @Override public ArrayTypeName visitArray(ArrayType t, Void p) {
-        return ArrayTypeName.get(t, typeVariables);
+        return ArrayTypeName.get(t, typeVariables, cache);
       }
 
       @Override public TypeName visitTypeVariable(javax.lang.model.type.TypeVariable t, Void p) {
-        return TypeVariableName.get(t, typeVariables);
+        return TypeVariableName.get(t, typeVariables, cache);
       }
 
       @Override public TypeName visitWildcard(javax.lang.model.type.WildcardType t, Void p) {
-        return WildcardTypeName.get(t, typeVariables);
+        return WildcardTypeName.get(t, typeVariables, cache);
       }
 
       @Override public TypeName visitNoType(NoType t, Void p) {
@@ -315,23 +365,13 @@ public class TypeName {
 
   /** Returns a type name equivalent to {@code type}. */
   public static TypeName get(Type type) {
-    return get(type, new LinkedHashMap<Type, TypeVariableName>());
+    if (type instanceof Class<?>) return CLASS_TYPE_NAMES.get((Class<?>) type);
+    return GenericTypeCache.get(type);
   }
 
   static TypeName get(Type type, Map<Type, TypeVariableName> map) {
     if (type instanceof Class<?>) {
-      Class<?> classType = (Class<?>) type;
-      if (type == void.class) return VOID;
-      if (type == boolean.class) return BOOLEAN;
-      if (type == byte.class) return BYTE;
-      if (type == short.class) return SHORT;
-      if (type == int.class) return INT;
-      if (type == long.class) return LONG;
-      if (type == char.class) return CHAR;
-      if (type == float.class) return FLOAT;
-      if (type == double.class) return DOUBLE;
-      if (classType.isArray()) return ArrayTypeName.of(get(classType.getComponentType(), map));
-      return ClassName.get(classType);
+      return CLASS_TYPE_NAMES.get((Class<?>) type);
 
     } else if (type instanceof ParameterizedType) {
       return ParameterizedTypeName.get((ParameterizedType) type, map);
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import static com.squareup.javapoet.Util.checkNotNull;
+
+/**
+ * Canonicalizes type names so that equal type names share a single instance. Code generators that
+ * create the same types over and over, like {@code List<String>}, can intern them to save memory
+ * and to make comparisons of equal types take the identity fast path.
+ *
+ * <pre>   {@code
+ *
+ *   TypeNameInterner interner = new TypeNameInterner();
+ *   ParameterizedTypeName a = interner.intern(ParameterizedTypeName.get(List.class, String.class));
+ *   ParameterizedTypeName b = interner.intern(ParameterizedTypeName.get(List.class, String.class));
+ *   assert a == b;
+ * }</pre>
+ *
+ * <p>Type variables, and type names that contain them, are returned as-is. A type variable's
+ * bounds aren't part of its equality, so interning {@code T extends Number} could otherwise return
+ * an earlier {@code T} and drop the bounds where the variable is declared.
+ *
+ * <p>Interned type names are only weakly referenced, so an interner doesn't keep type names alive
+ * after the code that uses them is done. It is safe to keep one interner for the lifetime of an
+ * annotation processor. Interners are thread-safe.
+ */
+public final class TypeNameInterner {
+  private final Map<TypeName, WeakReference<TypeName>> instances = new WeakHashMap<>();
+
+  /**
+   * Returns the canonical instance of {@code typeName}. This is the first interned type name equal
+   * to it that is still in use, or {@code typeName} itself if there is none or if it contains a
+   * type variable.
+   */
+  public synchronized <T extends TypeName> T intern(T typeName) {
+    checkNotNull(typeName, "typeName == null");
+    if (containsTypeVariable(typeName)) return typeName;
+    WeakReference<TypeName> reference = instances.get(typeName);
+    TypeName canonical = reference != null ? reference.get() : null;
+    if (canonical != null) {
+      @SuppressWarnings("unchecked") // Equal type names are instances of the same class.
+      T result = (T) canonical;
+      return result;
+    }
+    instances.put(typeName, new WeakReference<TypeName>(typeName));
+    return typeName;
+  }
+
+  private static boolean containsTypeVariable(TypeName typeName) {
+    if (typeName instanceof TypeVariableName) return true;
+    if (typeName instanceof ArrayTypeName) {
+      return containsTypeVariable(((ArrayTypeName) typeName).componentType);
+    }
+    if (typeName instanceof WildcardTypeName) {
+      WildcardTypeName wildcard = (WildcardTypeName) typeName;
+      return containsTypeVariable(wildcard.upperBounds)
+          || containsTypeVariable(wildcard.lowerBounds);
+    }
+    if (typeName instanceof ParameterizedTypeName) {
+      ParameterizedTypeName parameterized = (ParameterizedTypeName) typeName;
+      return containsTypeVariable(parameterized.typeArguments)
+          || (parameterized.enclosingType != null
+              && containsTypeVariable(parameterized.enclosingType));
+    }
+    return false;
+  }
+
+  private static boolean containsTypeVariable(List<TypeName> typeNames) {
+    for (TypeName typeName : typeNames) {
+      if (containsTypeVariable(typeName)) return true;
+    }
+    return false;
+  }
+
+  /** Returns the number of canonical instances that are still in use. */
+  public synchronized int size() {
+    return instances.size();
+  }
+}
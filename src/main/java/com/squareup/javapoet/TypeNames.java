@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.type.WildcardType;
+
+import static com.squareup.javapoet.Util.checkNotNull;
+
+/**
+ * Converts elements and type mirrors to type names, remembering each conversion. Annotation
+ * processors that convert the same types repeatedly should create one instance per processing
+ * round and use it in place of {@link TypeName#get(TypeMirror)}, {@link ClassName#get(TypeElement)}
+ * and {@link TypeVariableName#get(TypeParameterElement)}:
+ *
+ * <pre>   {@code
+ *
+ *   TypeNames typeNames = new TypeNames();
+ *   for (ExecutableElement method : methods) {
+ *     MethodSpec.Builder builder = MethodSpec.overriding(method, typeNames);
+ *     builder.addStatement("return new $T()", typeNames.get(method.getReturnType()));
+ *   }
+ * }</pre>
+ *
+ * <p>Elements are compared by identity. Compilers may create a new type mirror each time a type is
+ * requested, so type mirrors are compared by structure: declared types with the same element,
+ * enclosing type and type arguments share a conversion, as do equivalent arrays, wildcards, type
+ * variables and primitives. Other mirrors, like intersection types, are compared by identity.
+ * Instances must not be shared across rounds or compilations. Nested types are cached too:
+ * converting {@code List<Foo>} also caches {@code Foo} and the class name of {@code List}.
+ * Instances are not thread-safe.
+ */
+public final class TypeNames {
+  private final Map<TypeMirror, TypeName> typeNames = new IdentityHashMap<>();
+  /** Type names by {@linkplain #structuralKey structural key}. */
+  private final Map<Object, TypeName> typeNamesByKey = new HashMap<>();
+  private final Map<TypeElement, ClassName> classNames = new IdentityHashMap<>();
+  /** Type variables by element. This also breaks cycles like {@code E extends Enum<E>}. */
+  private final Map<TypeParameterElement, TypeVariableName> typeVariables = new LinkedHashMap<>();
+  private long hitCount;
+  private long missCount;
+
+  /** Returns a type name equivalent to {@code mirror}. */
+  public TypeName get(TypeMirror mirror) {
+    checkNotNull(mirror, "mirror == null");
+    TypeName result = typeNames.get(mirror);
+    if (result != null) {
+      hitCount++;
+      return result;
+    }
+    Object key = structuralKey(mirror);
+    result = key != null ? typeNamesByKey.get(key) : null;
+    if (result != null) {
+      hitCount++;
+      typeNames.put(mirror, result);
+      return result;
+    }
+    missCount++;
+    result = TypeName.convert(mirror, typeVariables, this);
+    typeNames.put(mirror, result);
+    if (key != null) typeNamesByKey.put(key, result);
+    return result;
+  }
+
+  /**
+   * Returns a key that is equal for all mirrors of the same type, or null if {@code mirror} is of
+   * a kind that is only compared by identity. Type annotations aren't part of the key because
+   * they don't affect the converted type name.
+   */
+  private static Object structuralKey(TypeMirror mirror) {
+    TypeKind kind = mirror.getKind();
+    switch (kind) {
+      case DECLARED: {
+        DeclaredType declaredType = (DeclaredType) mirror;
+        List<Object> key = new ArrayList<>();
+        key.add(declaredType.asElement());
+        TypeMirror enclosingType = declaredType.getEnclosingType();
+        if (enclosingType.getKind() != TypeKind.NONE) {
+          Object enclosingKey = structuralKey(enclosingType);
+          if (enclosingKey == null) return null;
+          key.add(enclosingKey);
+        }
+        for (TypeMirror typeArgument : declaredType.getTypeArguments()) {
+          Object typeArgumentKey = structuralKey(typeArgument);
+          if (typeArgumentKey == null) return null;
+          key.add(typeArgumentKey);
+        }
+        return key;
+      }
+      case ARRAY: {
+        Object componentKey = structuralKey(((ArrayType) mirror).getComponentType());
+        return componentKey != null ? Arrays.asList(kind, componentKey) : null;
+      }
+      case WILDCARD: {
+        WildcardType wildcardType = (WildcardType) mirror;
+        TypeMirror extendsBound = wildcardType.getExtendsBound();
+        TypeMirror superBound = wildcardType.getSuperBound();
+        Object extendsKey = extendsBound != null ? structuralKey(extendsBound) : kind;
+        Object superKey = superBound != null ? structuralKey(superBound) : kind;
+        return extendsKey != null && superKey != null
+            ? Arrays.asList(kind, extendsKey, superKey)
+            : null;
+      }
+      case TYPEVAR:
+        return ((TypeVariable) mirror).asElement();
+      default:
+        return kind.isPrimitive() || kind == TypeKind.VOID ? kind : null;
+    }
+  }
+
+  /** Returns the class name for {@code element}. */
+  public ClassName get(TypeElement element) {
+    checkNotNull(element, "element == null");
+    ClassName result = classNames.get(element);
+    if (result != null) {
+      hitCount++;
+      return result;
+    }
+    missCount++;
+    result = ClassName.get(element);
+    classNames.put(element, result);
+    return result;
+  }
+
+  /** Returns a type variable equivalent to {@code element}, including its bounds. */
+  public TypeVariableName get(TypeParameterElement element) {
+    checkNotNull(element, "element == null");
+    TypeVariableName result = typeVariables.get(element);
+    if (result != null) {
+      hitCount++;
+      return result;
+    }
+    missCount++;
+    return TypeVariableName.get((TypeVariable) element.asType(), typeVariables, this);
+  }
+
+  /** Returns the number of conversions that were answered from this cache. */
+  public long hitCount() {
+    return hitCount;
+  }
+
+  /** Returns the number of conversions that had to be computed, including nested ones. */
+  public long missCount() {
+    return missCount;
+  }
+
+  /** Returns the fraction of conversions answered from this cache, or 0 if there were none. */
+  public double hitRate() {
+    long total = hitCount + missCount;
+    return total == 0 ? 0.0 : (double) hitCount / total;
+  }
+}
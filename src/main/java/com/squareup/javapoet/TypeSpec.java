@@ -17,16 +17,21 @@ package com.squareup.javapoet;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Type;
+import java.security.MessageDigest;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
 import java.util.Set;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
@@ -57,29 +62,28 @@ public final class TypeSpec {
   public final List<TypeSpec> typeSpecs;
   public final List<Element> originatingElements;
 
+  /** Lazily computed hash code, or 0 if it hasn't been computed yet. */
+  private int hashCode;
+
   private TypeSpec(Builder builder) {
     this.kind = builder.kind;
     this.name = builder.name;
     this.anonymousTypeArguments = builder.anonymousTypeArguments;
-    this.javadoc = builder.javadoc.build();
+    this.javadoc = builder.javadoc != null ? builder.javadoc.build() : CodeBlock.EMPTY;
     this.annotations = Util.immutableList(builder.annotations);
-    this.modifiers = Util.immutableSet(builder.modifiers);
+    this.modifiers = ModifierSet.of(builder.modifiers);
     this.typeVariables = Util.immutableList(builder.typeVariables);
     this.superclass = builder.superclass;
     this.superinterfaces = Util.immutableList(builder.superinterfaces);
     this.enumConstants = Util.immutableMap(builder.enumConstants);
     this.fieldSpecs = Util.immutableList(builder.fieldSpecs);
-    this.staticBlock = builder.staticBlock.build();
-    this.initializerBlock = builder.initializerBlock.build();
+    this.staticBlock = builder.staticBlock != null ? builder.staticBlock.build() : CodeBlock.EMPTY;
+    this.initializerBlock =
+        builder.initializerBlock != null ? builder.initializerBlock.build() : CodeBlock.EMPTY;
     this.methodSpecs = Util.immutableList(builder.methodSpecs);
     this.typeSpecs = Util.immutableList(builder.typeSpecs);
-
-    List<Element> originatingElementsMutable = new ArrayList<>();
-    originatingElementsMutable.addAll(builder.originatingElements);
-    for (TypeSpec typeSpec : builder.typeSpecs) {
-      originatingElementsMutable.addAll(typeSpec.originatingElements);
-    }
-    this.originatingElements = Util.immutableList(originatingElementsMutable);
+    this.originatingElements = new OriginatingElements(
+        Util.immutableList(builder.originatingElements), typeSpecs);
   }
 
   public boolean hasModifier(Modifier modifier) {
@@ -126,7 +130,7 @@ public final class TypeSpec {
 
   public Builder toBuilder() {
     Builder builder = new Builder(kind, name, anonymousTypeArguments);
-    builder.javadoc.add(javadoc);
+    if (!javadoc.isEmpty()) builder.javadoc = javadoc.toBuilder();
     builder.annotations.addAll(annotations);
     builder.modifiers.addAll(modifiers);
     builder.typeVariables.addAll(typeVariables);
@@ -136,8 +140,8 @@ public final class TypeSpec {
     builder.fieldSpecs.addAll(fieldSpecs);
     builder.methodSpecs.addAll(methodSpecs);
     builder.typeSpecs.addAll(typeSpecs);
-    builder.initializerBlock.add(initializerBlock);
-    builder.staticBlock.add(staticBlock);
+    if (!initializerBlock.isEmpty()) builder.initializerBlock = initializerBlock.toBuilder();
+    if (!staticBlock.isEmpty()) builder.staticBlock = staticBlock.toBuilder();
     return builder;
   }
 
@@ -154,7 +158,7 @@ public final class TypeSpec {
         codeWriter.emitJavadoc(javadoc);
         codeWriter.emitAnnotations(annotations, false);
         codeWriter.emit("$L", enumName);
-        if (!anonymousTypeArguments.formatParts.isEmpty()) {
+        if (!anonymousTypeArguments.isEmpty()) {
           codeWriter.emit("(");
           codeWriter.emit(anonymousTypeArguments);
           codeWriter.emit(")");
@@ -171,7 +175,8 @@ public final class TypeSpec {
       } else {
         codeWriter.emitJavadoc(javadoc);
         codeWriter.emitAnnotations(annotations, false);
-        codeWriter.emitModifiers(modifiers, Util.union(implicitModifiers, kind.asMemberModifiers));
+        codeWriter.emitModifiers(modifiers, ModifierSet.get(
+            ModifierSet.bits(implicitModifiers) | kind.asMemberModifiers.bits));
         if (kind == Kind.ANNOTATION) {
           codeWriter.emit("$L $L", "@interface", name);
         } else {
@@ -300,11 +305,69 @@ public final class TypeSpec {
     if (this == o) return true;
     if (o == null) return false;
     if (getClass() != o.getClass()) return false;
-    return toString().equals(o.toString());
+    TypeSpec that = (TypeSpec) o;
+    if (hashCode != 0 && that.hashCode != 0 && hashCode != that.hashCode) return false;
+    return kind == that.kind
+        && Objects.equals(name, that.name)
+        && Objects.equals(anonymousTypeArguments, that.anonymousTypeArguments)
+        && modifiers.equals(that.modifiers)
+        && Objects.equals(superclass, that.superclass)
+        && superinterfaces.equals(that.superinterfaces)
+        && typeVariables.equals(that.typeVariables)
+        && annotations.equals(that.annotations)
+        && javadoc.equals(that.javadoc)
+        && Util.equalsInOrder(enumConstants, that.enumConstants)
+        && fieldSpecs.equals(that.fieldSpecs)
+        && staticBlock.equals(that.staticBlock)
+        && initializerBlock.equals(that.initializerBlock)
+        && methodSpecs.equals(that.methodSpecs)
+        && typeSpecs.equals(that.typeSpecs);
   }
 
   @Override public int hashCode() {
-    return toString().hashCode();
+    int result = hashCode;
+    if (result == 0) {
+      result = kind.ordinal();
+      result = 31 * result + Objects.hashCode(name);
+      result = 31 * result + Objects.hashCode(anonymousTypeArguments);
+      result = 31 * result + javadoc.hashCode();
+      result = 31 * result + annotations.hashCode();
+      result = 31 * result + Util.modifiersHashCode(modifiers);
+      result = 31 * result + typeVariables.hashCode();
+      result = 31 * result + Objects.hashCode(superclass);
+      result = 31 * result + superinterfaces.hashCode();
+      result = 31 * result + enumConstants.hashCode();
+      result = 31 * result + fieldSpecs.hashCode();
+      result = 31 * result + staticBlock.hashCode();
+      result = 31 * result + initializerBlock.hashCode();
+      result = 31 * result + methodSpecs.hashCode();
+      result = 31 * result + typeSpecs.hashCode();
+      hashCode = result;
+    }
+    return result;
+  }
+
+  /**
+   * Returns the SHA-256 hash of this type's UTF-8 encoded source code, as it would be rendered by
+   * {@link #toString()}, without holding that source code in memory at once.
+   */
+  public byte[] fingerprint() {
+    return fingerprint(Util.sha256());
+  }
+
+  /**
+   * Returns the hash computed by {@code digest} of this type's UTF-8 encoded source code, as it
+   * would be rendered by {@link #toString()}. The digest is reset first.
+   */
+  public byte[] fingerprint(MessageDigest digest) {
+    checkNotNull(digest, "digest == null");
+    digest.reset();
+    try (Writer writer = Utf8Writer.digesting(digest)) {
+      emit(new CodeWriter(writer), null, Collections.<Modifier>emptySet());
+    } catch (IOException e) {
+      throw new AssertionError();
+    }
+    return digest.digest();
   }
 
   @Override public String toString() {
@@ -320,38 +383,38 @@ public final class TypeSpec {
 
   public enum Kind {
     CLASS(
-        Collections.<Modifier>emptySet(),
-        Collections.<Modifier>emptySet(),
-        Collections.<Modifier>emptySet(),
-        Collections.<Modifier>emptySet()),
+        ModifierSet.EMPTY,
+        ModifierSet.EMPTY,
+        ModifierSet.EMPTY,
+        ModifierSet.EMPTY),
 
     INTERFACE(
-        Util.immutableSet(Arrays.asList(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)),
-        Util.immutableSet(Arrays.asList(Modifier.PUBLIC, Modifier.ABSTRACT)),
-        Util.immutableSet(Arrays.asList(Modifier.PUBLIC, Modifier.STATIC)),
-        Util.immutableSet(Arrays.asList(Modifier.STATIC))),
+        ModifierSet.of(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL),
+        ModifierSet.of(Modifier.PUBLIC, Modifier.ABSTRACT),
+        ModifierSet.of(Modifier.PUBLIC, Modifier.STATIC),
+        ModifierSet.of(Modifier.STATIC)),
 
     ENUM(
-        Collections.<Modifier>emptySet(),
-        Collections.<Modifier>emptySet(),
-        Collections.<Modifier>emptySet(),
-        Collections.singleton(Modifier.STATIC)),
+        ModifierSet.EMPTY,
+        ModifierSet.EMPTY,
+        ModifierSet.EMPTY,
+        ModifierSet.of(Modifier.STATIC)),
 
     ANNOTATION(
-        Util.immutableSet(Arrays.asList(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)),
-        Util.immutableSet(Arrays.asList(Modifier.PUBLIC, Modifier.ABSTRACT)),
-        Util.immutableSet(Arrays.asList(Modifier.PUBLIC, Modifier.STATIC)),
-        Util.immutableSet(Arrays.asList(Modifier.STATIC)));
-
-    private final Set<Modifier> implicitFieldModifiers;
-    private final Set<Modifier> implicitMethodModifiers;
-    private final Set<Modifier> implicitTypeModifiers;
-    private final Set<Modifier> asMemberModifiers;
-
-    Kind(Set<Modifier> implicitFieldModifiers,
-        Set<Modifier> implicitMethodModifiers,
-        Set<Modifier> implicitTypeModifiers,
-        Set<Modifier> asMemberModifiers) {
+        ModifierSet.of(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL),
+        ModifierSet.of(Modifier.PUBLIC, Modifier.ABSTRACT),
+        ModifierSet.of(Modifier.PUBLIC, Modifier.STATIC),
+        ModifierSet.of(Modifier.STATIC));
+
+    private final ModifierSet implicitFieldModifiers;
+    private final ModifierSet implicitMethodModifiers;
+    private final ModifierSet implicitTypeModifiers;
+    private final ModifierSet asMemberModifiers;
+
+    Kind(ModifierSet implicitFieldModifiers,
+        ModifierSet implicitMethodModifiers,
+        ModifierSet implicitTypeModifiers,
+        ModifierSet asMemberModifiers) {
       this.implicitFieldModifiers = implicitFieldModifiers;
       this.implicitMethodModifiers = implicitMethodModifiers;
       this.implicitTypeModifiers = implicitTypeModifiers;
@@ -359,24 +422,69 @@ public final class TypeSpec {
     }
   }
 
+  /**
+   * The originating elements of a type and of its nested types, without duplicates. The tree is
+   * flattened when the list is first read, visiting the elements declared on each type once. This
+   * saves copying each element into the list of every enclosing type as it is built.
+   */
+  private static final class OriginatingElements extends AbstractList<Element>
+      implements RandomAccess {
+    private final List<Element> declared;
+    private final List<TypeSpec> typeSpecs;
+    private volatile Element[] elements;
+
+    OriginatingElements(List<Element> declared, List<TypeSpec> typeSpecs) {
+      this.declared = declared;
+      this.typeSpecs = typeSpecs;
+    }
+
+    @Override public Element get(int index) {
+      return elements()[index];
+    }
+
+    @Override public int size() {
+      return elements().length;
+    }
+
+    private Element[] elements() {
+      // Racing threads may each flatten the tree, but they compute equal arrays.
+      Element[] result = elements;
+      if (result == null) {
+        Set<Element> all = new LinkedHashSet<>();
+        collect(all);
+        result = all.toArray(new Element[all.size()]);
+        elements = result;
+      }
+      return result;
+    }
+
+    private void collect(Set<Element> out) {
+      out.addAll(declared);
+      for (TypeSpec typeSpec : typeSpecs) {
+        ((OriginatingElements) typeSpec.originatingElements).collect(out);
+      }
+    }
+  }
+
   public static final class Builder {
     private final Kind kind;
     private final String name;
     private final CodeBlock anonymousTypeArguments;
 
-    private final CodeBlock.Builder javadoc = CodeBlock.builder();
-    private final List<AnnotationSpec> annotations = new ArrayList<>();
+    // Code builders are allocated on first use; most types have no javadoc or blocks.
+    private CodeBlock.Builder javadoc;
+    private final List<AnnotationSpec> annotations = new SharedList.Builder<>();
     private final List<Modifier> modifiers = new ArrayList<>();
-    private final List<TypeVariableName> typeVariables = new ArrayList<>();
+    private final List<TypeVariableName> typeVariables = new SharedList.Builder<>();
     private TypeName superclass = ClassName.OBJECT;
-    private final List<TypeName> superinterfaces = new ArrayList<>();
+    private final List<TypeName> superinterfaces = new SharedList.Builder<>();
     private final Map<String, TypeSpec> enumConstants = new LinkedHashMap<>();
-    private final List<FieldSpec> fieldSpecs = new ArrayList<>();
-    private final CodeBlock.Builder staticBlock = CodeBlock.builder();
-    private final CodeBlock.Builder initializerBlock = CodeBlock.builder();
-    private final List<MethodSpec> methodSpecs = new ArrayList<>();
-    private final List<TypeSpec> typeSpecs = new ArrayList<>();
-    private final List<Element> originatingElements = new ArrayList<>();
+    private final List<FieldSpec> fieldSpecs = new SharedList.Builder<>();
+    private CodeBlock.Builder staticBlock;
+    private CodeBlock.Builder initializerBlock;
+    private final List<MethodSpec> methodSpecs = new SharedList.Builder<>();
+    private final List<TypeSpec> typeSpecs = new SharedList.Builder<>();
+    private final List<Element> originatingElements = new SharedList.Builder<>();
 
     private Builder(Kind kind, String name,
         CodeBlock anonymousTypeArguments) {
@@ -387,7 +495,7 @@ public final class TypeSpec {
     }
 
     public Builder addJavadoc(String format, Object... args) {
-      javadoc.add(format, args);
+      javadoc().add(format, args);
       return this;
     }
 
@@ -503,7 +611,7 @@ public final class TypeSpec {
     }
 
     public Builder addStaticBlock(CodeBlock block) {
-      staticBlock.beginControlFlow("static").add(block).endControlFlow();
+      staticBlock().beginControlFlow("static").add(block).endControlFlow();
       return this;
     }
 
@@ -511,7 +619,7 @@ public final class TypeSpec {
       if ((kind != Kind.CLASS && kind != Kind.ENUM)) {
         throw new UnsupportedOperationException(kind + " can't have initializer blocks");
       }
-      initializerBlock.add("{\n")
+      initializerBlock().add("{\n")
           .indent()
           .add(block)
           .unindent()
@@ -569,6 +677,21 @@ public final class TypeSpec {
       return this;
     }
 
+    private CodeBlock.Builder javadoc() {
+      if (javadoc == null) javadoc = CodeBlock.builder();
+      return javadoc;
+    }
+
+    private CodeBlock.Builder staticBlock() {
+      if (staticBlock == null) staticBlock = CodeBlock.builder();
+      return staticBlock;
+    }
+
+    private CodeBlock.Builder initializerBlock() {
+      if (initializerBlock == null) initializerBlock = CodeBlock.builder();
+      return initializerBlock;
+    }
+
     public TypeSpec build() {
       checkArgument(kind != Kind.ENUM || !enumConstants.isEmpty(),
           "at least one enum constant is required for %s", name);
@@ -79,6 +79,15 @@ public final class TypeVariableName extends TypeName {
     return new TypeVariableName(name, Collections.unmodifiableList(boundsNoObject));
   }
 
+  /** Bounds are only emitted where type variables are declared, so they are ignored here. */
+  @Override boolean equalsIgnoringAnnotations(TypeName that) {
+    return name.equals(((TypeVariableName) that).name);
+  }
+
+  @Override int hashCodeIgnoringAnnotations() {
+    return name.hashCode();
+  }
+
   @Override CodeWriter emit(CodeWriter out) throws IOException {
     return out.emitAndIndent(name);
   }
@@ -111,8 +120,8 @@ public final class TypeVariableName extends TypeName {
    * constructing the bounds, we can just return it from the map. And, the code that put the entry
    * in {@code variables} will make sure that the bounds are filled in before returning.
    */
-  static TypeVariableName get(
-      TypeVariable mirror, Map<TypeParameterElement, TypeVariableName> typeVariables) {
+  static TypeVariableName get(TypeVariable mirror,
+      Map<TypeParameterElement, TypeVariableName> typeVariables, TypeNames cache) {
     TypeParameterElement element = (TypeParameterElement) mirror.asElement();
     TypeVariableName typeVariableName = typeVariables.get(element);
     if (typeVariableName == null) {
@@ -123,7 +132,7 @@ public final class TypeVariableName extends TypeName {
       typeVariableName = new TypeVariableName(element.getSimpleName().toString(), visibleBounds);
       typeVariables.put(element, typeVariableName);
       for (TypeMirror typeMirror : element.getBounds()) {
-        bounds.add(TypeName.get(typeMirror, typeVariables));
+        bounds.add(TypeName.get(typeMirror, typeVariables, cache));
       }
       bounds.remove(OBJECT);
     }
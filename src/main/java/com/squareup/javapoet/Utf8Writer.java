@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+
+/**
+ * Encodes characters as UTF-8 into a buffer that is written to a channel whenever it fills up.
+ * Generated code is nearly all ASCII, which is copied into the buffer one byte per character
+ * without going through a {@link java.nio.charset.CharsetEncoder}. Like {@link String#getBytes},
+ * this replaces unpaired surrogates with {@code '?'}.
+ */
+final class Utf8Writer extends Writer {
+  static final int DEFAULT_BUFFER_SIZE = 8192;
+
+  private final WritableByteChannel channel;
+  private final ByteBuffer buffer;
+  private final byte[] bytes;
+  /** A high surrogate waiting for the low surrogate that follows it, or 0. */
+  private char highSurrogate;
+  private boolean closed;
+
+  Utf8Writer(WritableByteChannel channel) {
+    this(channel, DEFAULT_BUFFER_SIZE);
+  }
+
+  Utf8Writer(WritableByteChannel channel, int bufferSize) {
+    Util.checkArgument(bufferSize >= 4, "bufferSize < 4: %s", bufferSize);
+    this.channel = channel;
+    this.buffer = ByteBuffer.allocate(bufferSize);
+    this.bytes = buffer.array();
+  }
+
+  /**
+   * Returns a writer that feeds the UTF-8 encoding of its input to {@code digest}, at most one
+   * buffer at a time.
+   */
+  static Utf8Writer digesting(final MessageDigest digest) {
+    return new Utf8Writer(new WritableByteChannel() {
+      private boolean open = true;
+
+      @Override public int write(ByteBuffer source) {
+        int count = source.remaining();
+        digest.update(source);
+        return count;
+      }
+
+      @Override public boolean isOpen() {
+        return open;
+      }
+
+      @Override public void close() {
+        open = false;
+      }
+    });
+  }
+
+  @Override public void write(int c) throws IOException {
+    encode((char) c);
+  }
+
+  @Override public void write(char[] chars, int offset, int length) throws IOException {
+    write(CharBuffer.wrap(chars), offset, offset + length);
+  }
+
+  @Override public void write(String s, int offset, int length) throws IOException {
+    write(s, offset, offset + length);
+  }
+
+  @Override public Writer append(CharSequence s) throws IOException {
+    if (s == null) s = "null";
+    write(s, 0, s.length());
+    return this;
+  }
+
+  @Override public Writer append(CharSequence s, int start, int end) throws IOException {
+    if (s == null) s = "null";
+    if (start < 0 || start > end || end > s.length()) {
+      throw new IndexOutOfBoundsException("start=" + start + ", end=" + end);
+    }
+    write(s, start, end);
+    return this;
+  }
+
+  @Override public Writer append(char c) throws IOException {
+    encode(c);
+    return this;
+  }
+
+  private void write(CharSequence s, int start, int end) throws IOException {
+    checkOpen();
+    int position = buffer.position();
+    for (int i = start; i < end; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80 && highSurrogate == 0) {
+        if (position == bytes.length) {
+          buffer.position(position);
+          drain();
+          position = 0;
+        }
+        bytes[position++] = (byte) c;
+      } else {
+        buffer.position(position);
+        encode(c);
+        position = buffer.position();
+      }
+    }
+    buffer.position(position);
+  }
+
+  private void encode(char c) throws IOException {
+    checkOpen();
+    if (buffer.remaining() < 4) drain(); // No character encodes to more than 4 bytes.
+    if (highSurrogate != 0) {
+      char high = highSurrogate;
+      highSurrogate = 0;
+      if (Character.isLowSurrogate(c)) {
+        int codePoint = Character.toCodePoint(high, c);
+        buffer.put((byte) (0xf0 | (codePoint >> 18)));
+        buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+        buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+        buffer.put((byte) (0x80 | (codePoint & 0x3f)));
+        return;
+      }
+      buffer.put((byte) '?');
+    }
+
+    if (c < 0x80) {
+      buffer.put((byte) c);
+    } else if (c < 0x800) {
+      buffer.put((byte) (0xc0 | (c >> 6)));
+      buffer.put((byte) (0x80 | (c & 0x3f)));
+    } else if (Character.isHighSurrogate(c)) {
+      highSurrogate = c;
+    } else if (Character.isLowSurrogate(c)) {
+      buffer.put((byte) '?');
+    } else {
+      buffer.put((byte) (0xe0 | (c >> 12)));
+      buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+      buffer.put((byte) (0x80 | (c & 0x3f)));
+    }
+  }
+
+  /** Writes the buffered bytes to the channel. */
+  private void drain() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private void checkOpen() throws IOException {
+    if (closed) throw new IOException("closed");
+  }
+
+  /** Writes buffered bytes to the channel. A trailing high surrogate stays buffered. */
+  @Override public void flush() throws IOException {
+    checkOpen();
+    drain();
+  }
+
+  @Override public void close() throws IOException {
+    if (closed) return;
+    try {
+      if (highSurrogate != 0) {
+        highSurrogate = 0;
+        if (!buffer.hasRemaining()) drain();
+        buffer.put((byte) '?');
+      }
+      drain();
+    } finally {
+      closed = true;
+      channel.close();
+    }
+  }
+}
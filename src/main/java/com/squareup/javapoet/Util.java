@@ -17,10 +17,13 @@ package com.squareup.javapoet;
 
 import static java.lang.Character.isISOControl;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -47,17 +50,52 @@ final class Util {
     DEFAULT = def;
   }
 
+  // The immutable collections below share the empty singletons and use singleton collections for
+  // one element. Most specs have no annotations and at most one modifier, parameter or exception.
+
   static <K, V> Map<K, List<V>> immutableMultimap(Map<K, List<V>> multimap) {
     LinkedHashMap<K, List<V>> result = new LinkedHashMap<>();
     for (Map.Entry<K, List<V>> entry : multimap.entrySet()) {
       if (entry.getValue().isEmpty()) continue;
       result.put(entry.getKey(), immutableList(entry.getValue()));
     }
-    return Collections.unmodifiableMap(result);
+    return immutableMap(result);
   }
 
   static <K, V> Map<K, V> immutableMap(Map<K, V> map) {
-    return Collections.unmodifiableMap(new LinkedHashMap<>(map));
+    switch (map.size()) {
+      case 0:
+        return Collections.emptyMap();
+      case 1:
+        Map.Entry<K, V> entry = map.entrySet().iterator().next();
+        return Collections.singletonMap(entry.getKey(), entry.getValue());
+      default:
+        return Collections.unmodifiableMap(new LinkedHashMap<>(map));
+    }
+  }
+
+  /** Returns true if {@code a} and {@code b} have equal entries in the same iteration order. */
+  static boolean equalsInOrder(Map<?, ?> a, Map<?, ?> b) {
+    if (a.size() != b.size()) return false;
+    Iterator<? extends Map.Entry<?, ?>> i = a.entrySet().iterator();
+    Iterator<? extends Map.Entry<?, ?>> j = b.entrySet().iterator();
+    while (i.hasNext()) {
+      if (!i.next().equals(j.next())) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns a hash code for {@code modifiers} that is stable across runs. Enum hash codes are
+   * identity hash codes, so {@link Set#hashCode} isn't.
+   */
+  static int modifiersHashCode(Set<Modifier> modifiers) {
+    if (modifiers instanceof ModifierSet) return (int) ((ModifierSet) modifiers).bits;
+    int result = 0;
+    for (Modifier modifier : modifiers) {
+      result |= 1 << modifier.ordinal();
+    }
+    return result;
   }
 
   static void checkArgument(boolean condition, String format, Object... args) {
@@ -74,11 +112,29 @@ final class Util {
   }
 
   static <T> List<T> immutableList(Collection<T> collection) {
-    return Collections.unmodifiableList(new ArrayList<>(collection));
+    switch (collection.size()) {
+      case 0:
+        return Collections.emptyList();
+      case 1:
+        return Collections.singletonList(collection.iterator().next());
+      default:
+        if (collection instanceof SharedList.Builder) {
+          return ((SharedList.Builder<T>) collection).build();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(collection));
+    }
   }
 
-  static <T> Set<T> immutableSet(Collection<T> set) {
-    return Collections.unmodifiableSet(new LinkedHashSet<>(set));
+  static <T> Set<T> immutableSet(Collection<T> collection) {
+    Set<T> set = new LinkedHashSet<>(collection);
+    switch (set.size()) {
+      case 0:
+        return Collections.emptySet();
+      case 1:
+        return Collections.singleton(set.iterator().next());
+      default:
+        return Collections.unmodifiableSet(set);
+    }
   }
 
   static String join(String separator, List<String> parts) {
@@ -91,11 +147,13 @@ final class Util {
     return result.toString();
   }
 
-  static <T> Set<T> union(Set<T> a, Set<T> b) {
-    Set<T> result = new LinkedHashSet<>();
-    result.addAll(a);
-    result.addAll(b);
-    return result;
+  /** Returns a new SHA-256 digest, which every Java platform is required to support. */
+  static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
   }
 
   static void requireExactlyOneOf(Set<Modifier> modifiers, Modifier... mutuallyExclusive) {
@@ -62,6 +62,22 @@ public final class WildcardTypeName extends TypeName {
     return new WildcardTypeName(upperBounds, lowerBounds);
   }
 
+  /** Only the emitted bound counts: the lower bound if there is one, else the upper bound. */
+  @Override boolean equalsIgnoringAnnotations(TypeName that) {
+    WildcardTypeName wildcard = (WildcardTypeName) that;
+    if (lowerBounds.size() == 1 || wildcard.lowerBounds.size() == 1) {
+      return lowerBounds.size() == wildcard.lowerBounds.size()
+          && lowerBounds.get(0).equals(wildcard.lowerBounds.get(0));
+    }
+    return upperBounds.get(0).equals(wildcard.upperBounds.get(0));
+  }
+
+  @Override int hashCodeIgnoringAnnotations() {
+    return lowerBounds.size() == 1
+        ? 31 * lowerBounds.get(0).hashCode() + 1
+        : upperBounds.get(0).hashCode();
+  }
+
   @Override CodeWriter emit(CodeWriter out) throws IOException {
     if (lowerBounds.size() == 1) {
       return out.emit("? super $T", lowerBounds.get(0));
@@ -98,22 +114,22 @@ public final class WildcardTypeName extends TypeName {
   }
 
   public static TypeName get(javax.lang.model.type.WildcardType mirror) {
-    return get(mirror, new LinkedHashMap<TypeParameterElement, TypeVariableName>());
+    return get(mirror, new LinkedHashMap<TypeParameterElement, TypeVariableName>(), null);
   }
 
   static TypeName get(
       javax.lang.model.type.WildcardType mirror,
-      Map<TypeParameterElement, TypeVariableName> typeVariables) {
+      Map<TypeParameterElement, TypeVariableName> typeVariables, TypeNames cache) {
     TypeMirror extendsBound = mirror.getExtendsBound();
     if (extendsBound == null) {
       TypeMirror superBound = mirror.getSuperBound();
       if (superBound == null) {
         return subtypeOf(Object.class);
       } else {
-        return supertypeOf(TypeName.get(superBound, typeVariables));
+        return supertypeOf(TypeName.get(superBound, typeVariables, cache));
       }
     } else {
-      return subtypeOf(TypeName.get(extendsBound, typeVariables));
+      return subtypeOf(TypeName.get(extendsBound, typeVariables, cache));
     }
   }
 
@@ -353,4 +353,18 @@ public final class AnnotationSpecTest {
   private String toString(TypeSpec typeSpec) {
     return JavaFile.builder("com.squareup.tacos", typeSpec).build().toString();
   }
+
+  @Test public void equalsComparesMembersInOrder() {
+    AnnotationSpec a = AnnotationSpec.builder(AnnotationC.class)
+        .addMember("a", "$L", 1)
+        .addMember("b", "$L", 2)
+        .build();
+    AnnotationSpec b = AnnotationSpec.builder(AnnotationC.class)
+        .addMember("b", "$L", 2)
+        .addMember("a", "$L", 1)
+        .build();
+    assertThat(a.toString().equals(b.toString())).isFalse();
+    assertThat(a.equals(b)).isFalse();
+    assertThat(a.equals(a.toBuilder().build())).isTrue();
+  }
 }
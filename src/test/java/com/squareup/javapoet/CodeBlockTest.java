@@ -15,6 +15,10 @@
  */
 package com.squareup.javapoet;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import org.junit.Test;
 
 import static com.google.common.truth.Truth.assertThat;
@@ -32,6 +36,57 @@ public final class CodeBlockTest {
     assertThat(a.hashCode()).isEqualTo(b.hashCode());
   }
 
+  @Test public void hashCodeIsHashCodeOfRenderedCode() {
+    CodeBlock codeBlock = CodeBlock.builder()
+        .addStatement("$T list = new $T<>()", List.class, ArrayList.class)
+        .beginControlFlow("for ($T s : $N)", String.class, "strings")
+        .addStatement("list.add($S)", "taco\ncat")
+        .endControlFlow()
+        .build();
+    assertThat(codeBlock.hashCode()).isEqualTo(codeBlock.toString().hashCode());
+    assertThat(codeBlock.hashCode()).isEqualTo(codeBlock.toString().hashCode());
+  }
+
+  @Test public void equalsAgreesWithRenderedCode() {
+    CodeBlock[] codeBlocks = {
+        CodeBlock.of("$T.out", System.class),
+        CodeBlock.of("$T.out", ClassName.get("java.lang", "System")),
+        CodeBlock.of("$L.out", "java.lang.System"),
+        CodeBlock.of("java.lang.System.out"),
+        CodeBlock.builder().add("java.lang.").add("System.out").build(),
+        CodeBlock.of("$1T.$2N", System.class, "out"),
+        CodeBlock.of("$T.out", TypeName.get(System.class).annotated(
+            AnnotationSpec.builder(Deprecated.class).build())),
+        CodeBlock.of("$T.err", System.class),
+        CodeBlock.of("$S", "java.lang.System.out"),
+        CodeBlock.of("$L", 1),
+        CodeBlock.of("$L", 1L),
+        CodeBlock.of("1"),
+        CodeBlock.builder().indent().add("1").unindent().build(),
+        CodeBlock.of("1\n"),
+        CodeBlock.builder().indent().add("1\n").unindent().build(),
+        CodeBlock.of(""),
+        CodeBlock.builder().build(),
+    };
+    for (CodeBlock a : codeBlocks) {
+      for (CodeBlock b : codeBlocks) {
+        boolean renderedEqual = a.toString().equals(b.toString());
+        assertThat(a.equals(b)).named(a + " equals " + b).isEqualTo(renderedEqual);
+        if (renderedEqual) {
+          assertThat(a.hashCode()).named(a + " hashCode").isEqualTo(b.hashCode());
+        }
+      }
+    }
+  }
+
+  @Test public void equalsWithIdenticallyRenderingTypes() {
+    CodeBlock a = CodeBlock.of("$T<$T>", List.class, String.class);
+    CodeBlock b = CodeBlock.of("$T", ParameterizedTypeName.get(List.class, String.class));
+    assertThat(a).isEqualTo(b);
+    assertThat(a.hashCode()).isEqualTo(b.hashCode());
+    assertThat(new HashSet<>(Arrays.asList(a, b))).hasSize(1);
+  }
+
   @Test public void of() {
     CodeBlock a = CodeBlock.of("$L taco", "delicious");
     assertThat(a.toString()).isEqualTo("delicious taco");
@@ -193,4 +248,192 @@ public final class CodeBlockTest {
       assertThat(expected).hasMessage("statement exit $] has no matching statement enter $[");
     }
   }
+
+  @Test public void composedBlocksKeepTheirLiterals() {
+    CodeBlock inner = CodeBlock.builder()
+        .add("$$inner$L", 1)
+        .indent()
+        .add("\n$N()", "call")
+        .build();
+    CodeBlock outer = CodeBlock.builder()
+        .add("before ")
+        .add(inner)
+        .unindent()
+        .add(" after $S", "s")
+        .build();
+    assertThat(outer.toString()).isEqualTo("before $inner1\n  call() after \"s\"");
+    assertThat(outer.toBuilder().add(inner).build().toString())
+        .isEqualTo("before $inner1\n  call() after \"s\"$inner1\n  call()");
+  }
+
+  @Test public void emptyBlock() {
+    assertThat(CodeBlock.builder().build().isEmpty()).isTrue();
+    assertThat(CodeBlock.builder().add("").build().isEmpty()).isTrue();
+    assertThat(CodeBlock.builder().add(CodeBlock.builder().build()).build().isEmpty()).isTrue();
+    assertThat(CodeBlock.builder().indent().build().isEmpty()).isFalse();
+  }
+
+  @Test public void repeatedFormatIsParsedOnce() {
+    String format = "$T repeatedFormatIsParsedOnce = $L";
+    long hits = CodeBlock.formatCacheHitCount();
+    long misses = CodeBlock.formatCacheMissCount();
+    CodeBlock first = CodeBlock.of(format, String.class, 1);
+    CodeBlock second = CodeBlock.of(format, Integer.class, 2);
+    assertThat(CodeBlock.formatCacheMissCount()).isEqualTo(misses + 1);
+    assertThat(CodeBlock.formatCacheHitCount()).isEqualTo(hits + 1);
+    assertThat(first.toString()).isEqualTo("java.lang.String repeatedFormatIsParsedOnce = 1");
+    assertThat(second.toString()).isEqualTo("java.lang.Integer repeatedFormatIsParsedOnce = 2");
+  }
+
+  @Test public void cachedFormatIsValidatedAgainstArgumentCount() {
+    String format = "$L cachedFormatIsValidatedAgainstArgumentCount $L";
+    assertThat(CodeBlock.of(format, 1, 2).toString())
+        .isEqualTo("1 cachedFormatIsValidatedAgainstArgumentCount 2");
+    try {
+      CodeBlock.of(format, 1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected).hasMessage("index 2 for '$L' not in range (received 1 arguments)");
+    }
+    try {
+      CodeBlock.of(format, 1, 2, 3);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected).hasMessage("unused arguments: expected 2, received 3");
+    }
+  }
+
+  @Test public void cachedFormatConvertsArguments() {
+    String format = "$N cachedFormatConvertsArguments";
+    CodeBlock.of(format, "a");
+    try {
+      CodeBlock.of(format, 1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected).hasMessage("expected name but was 1");
+    }
+  }
+
+  @Test public void failedAddLeavesBuilderUnchanged() {
+    CodeBlock.Builder builder = CodeBlock.builder().add("$L ", "a");
+    try {
+      builder.add("$L $S $N", "b", "c", 1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected).hasMessage("expected name but was 1");
+    }
+    assertThat(builder.add("$L", "d").build().toString()).isEqualTo("a d");
+  }
+
+  @Test public void formatCacheIsBounded() {
+    try {
+      CodeBlock.setFormatCacheSize(2);
+      CodeBlock.of("$L formatCacheIsBounded 1", 1);
+      CodeBlock.of("$L formatCacheIsBounded 2", 2);
+      CodeBlock.of("$L formatCacheIsBounded 3", 3);
+      assertThat(CodeFormat.cacheSize()).isAtMost(2);
+    } finally {
+      CodeBlock.setFormatCacheSize(CodeFormat.DEFAULT_CACHE_SIZE);
+    }
+  }
+
+  @Test public void formatCacheKeepsFormatsInUse() {
+    try {
+      CodeBlock.setFormatCacheSize(8);
+      String hot = "$L formatCacheKeepsFormatsInUse";
+      CodeBlock.of(hot, 0);
+      for (int i = 0; i < 100; i++) {
+        CodeBlock.of("$L formatCacheKeepsFormatsInUse " + i, i);
+        long misses = CodeBlock.formatCacheMissCount();
+        CodeBlock.of(hot, i);
+        assertThat(CodeBlock.formatCacheMissCount()).isEqualTo(misses);
+        assertThat(CodeFormat.cacheSize()).isAtMost(8);
+      }
+    } finally {
+      CodeBlock.setFormatCacheSize(CodeFormat.DEFAULT_CACHE_SIZE);
+    }
+  }
+
+  @Test public void longFormatsAreNotCached() {
+    StringBuilder format = new StringBuilder("$L longFormatsAreNotCached");
+    while (format.length() <= CodeFormat.MAX_CACHED_LENGTH) {
+      format.append(" padding");
+    }
+    int size = CodeFormat.cacheSize();
+    long misses = CodeBlock.formatCacheMissCount();
+    CodeBlock.of(format.toString(), 1);
+    CodeBlock.of(format.toString(), 2);
+    assertThat(CodeBlock.formatCacheMissCount()).isEqualTo(misses + 2);
+    assertThat(CodeFormat.cacheSize()).isEqualTo(size);
+  }
+
+  @Test public void formatCacheCanBeDisabled() {
+    try {
+      CodeBlock.setFormatCacheSize(0);
+      long hits = CodeBlock.formatCacheHitCount();
+      long misses = CodeBlock.formatCacheMissCount();
+      CodeBlock.of("$L formatCacheCanBeDisabled", 1);
+      CodeBlock codeBlock = CodeBlock.of("$L formatCacheCanBeDisabled", 2);
+      assertThat(codeBlock.toString()).isEqualTo("2 formatCacheCanBeDisabled");
+      assertThat(CodeFormat.cacheSize()).isEqualTo(0);
+      assertThat(CodeBlock.formatCacheHitCount()).isEqualTo(hits);
+      assertThat(CodeBlock.formatCacheMissCount()).isEqualTo(misses);
+    } finally {
+      CodeBlock.setFormatCacheSize(CodeFormat.DEFAULT_CACHE_SIZE);
+    }
+  }
+
+  @Test public void formatCacheSizeMustNotBeNegative() {
+    try {
+      CodeBlock.setFormatCacheSize(-1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected).hasMessage("maxSize < 0: -1");
+    }
+  }
+
+  @Test public void literalCharSequenceArgument() {
+    StringBuilder literal = new StringBuilder("first\nsecond");
+    CodeBlock codeBlock = CodeBlock.builder()
+        .indent()
+        .add("$L;\n", literal)
+        .build();
+    assertThat(codeBlock.toString()).isEqualTo("first\n  second;\n");
+  }
+
+  @Test public void deepIndentation() {
+    CodeBlock.Builder builder = CodeBlock.builder();
+    for (int i = 0; i < 10; i++) {
+      builder.beginControlFlow("if (a$L)", i);
+    }
+    builder.addStatement("b()");
+    for (int i = 0; i < 10; i++) {
+      builder.endControlFlow();
+    }
+    String[] lines = builder.build().toString().split("\n");
+    assertThat(lines[9]).isEqualTo("                  if (a9) {");
+    assertThat(lines[10]).isEqualTo("                    b();");
+    assertThat(lines[11]).isEqualTo("                  }");
+  }
+
+  @Test public void toBuilderDefersCopying() {
+    CodeBlock block = CodeBlock.builder().addStatement("$T a = $S", String.class, "a").build();
+    assertThat(block.toBuilder().build()).isSameAs(block);
+    assertThat(block.toBuilder().addStatement("b()").build().toString())
+        .isEqualTo("java.lang.String a = \"a\";\nb();\n");
+    assertThat(CodeBlock.builder().add(block).add(block).build().toString())
+        .isEqualTo("java.lang.String a = \"a\";\njava.lang.String a = \"a\";\n");
+  }
+
+  @Test(timeout = 10_000) public void emitLargeBlockWithoutNewlines() {
+    // Each literal run is emitted separately. If finding a run's newline scanned the rest of the
+    // packed literals, this would take over 30 seconds instead of under one.
+    CodeBlock.Builder builder = CodeBlock.builder();
+    for (int i = 0; i < 300_000; i++) {
+      builder.add("call($L), ", i);
+    }
+    String code = builder.build().toString();
+    assertThat(code).startsWith("call(0), call(1), ");
+    assertThat(code).endsWith("call(299999), ");
+  }
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public final class ConcurrentNameAllocatorTest {
+  private final ConcurrentNameAllocator nameAllocator = new ConcurrentNameAllocator();
+
+  @Test public void usage() throws Exception {
+    assertThat(nameAllocator.newName("foo", 1)).isEqualTo("foo");
+    assertThat(nameAllocator.newName("bar", 2)).isEqualTo("bar");
+    assertThat(nameAllocator.get(1)).isEqualTo("foo");
+    assertThat(nameAllocator.get(2)).isEqualTo("bar");
+  }
+
+  @Test public void nameCollision() throws Exception {
+    assertThat(nameAllocator.newName("foo")).isEqualTo("foo");
+    assertThat(nameAllocator.newName("foo")).isEqualTo("foo_");
+    assertThat(nameAllocator.newName("foo")).isEqualTo("foo__");
+    assertThat(nameAllocator.newName("public")).isEqualTo("public_");
+    assertThat(nameAllocator.newName("1ab")).isEqualTo("_1ab");
+  }
+
+  @Test public void tagReuseForbidden() throws Exception {
+    nameAllocator.newName("foo", 1);
+    try {
+      nameAllocator.newName("bar", 1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected).hasMessage("tag 1 cannot be used for both 'foo' and 'bar'");
+    }
+  }
+
+  @Test public void useBeforeAllocateForbidden() throws Exception {
+    try {
+      nameAllocator.get(1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected).hasMessage("unknown tag: 1");
+    }
+  }
+
+  @Test public void concurrentNamesAreUnique() throws Exception {
+    final int threads = 8;
+    final int namesPerThread = 500;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<List<String>>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        final int thread = t;
+        futures.add(executor.submit(new Callable<List<String>>() {
+          @Override public List<String> call() {
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < namesPerThread; i++) {
+              names.add(nameAllocator.newName(i % 2 == 0 ? "value" : "value_", thread + "." + i));
+            }
+            return names;
+          }
+        }));
+      }
+      Set<String> allNames = new HashSet<>();
+      for (Future<List<String>> future : futures) {
+        allNames.addAll(future.get());
+      }
+      assertThat(allNames).hasSize(threads * namesPerThread);
+      assertThat(nameAllocator.get("3.7")).startsWith("value_");
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test public void deterministicModeMatchesSequentialAllocation() throws Exception {
+    List<String> suggestions = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      suggestions.add(i % 3 == 0 ? "value" : i % 3 == 1 ? "value_" : "name" + (i % 7));
+    }
+
+    NameAllocator sequential = new NameAllocator();
+    for (int i = 0; i < suggestions.size(); i++) {
+      sequential.newName(suggestions.get(i), i);
+    }
+
+    List<Integer> shuffled = new ArrayList<>();
+    for (int i = 0; i < suggestions.size(); i++) {
+      shuffled.add(i);
+    }
+    Collections.shuffle(shuffled, new Random(0));
+    for (int i : shuffled) {
+      nameAllocator.reserve(suggestions.get(i), i, i);
+    }
+    nameAllocator.resolve();
+
+    for (int i = 0; i < suggestions.size(); i++) {
+      assertThat(nameAllocator.get(i)).isEqualTo(sequential.get(i));
+    }
+  }
+
+  @Test public void deterministicModeOrdersByOrderThenSequence() throws Exception {
+    nameAllocator.reserve("foo", "b1", 2);
+    nameAllocator.reserve("foo", "a1", 1);
+    nameAllocator.reserve("foo", "b2", 2);
+    nameAllocator.reserve("foo", "a2", 1);
+    nameAllocator.resolve();
+    assertThat(nameAllocator.get("a1")).isEqualTo("foo");
+    assertThat(nameAllocator.get("a2")).isEqualTo("foo_");
+    assertThat(nameAllocator.get("b1")).isEqualTo("foo__");
+    assertThat(nameAllocator.get("b2")).isEqualTo("foo___");
+  }
+
+  @Test public void failedResolveChangesNothing() throws Exception {
+    nameAllocator.reserve("foo", "a", 1);
+    nameAllocator.reserve("bar", "dup", 2);
+    nameAllocator.reserve("baz", "dup", 3);
+    nameAllocator.reserve("qux", "b", 4);
+    try {
+      nameAllocator.resolve();
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected).hasMessage("tag dup cannot be used for both 'bar' and 'baz'");
+    }
+    try {
+      nameAllocator.get("a");
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    assertThat(nameAllocator.newName("foo")).isEqualTo("foo");
+    assertThat(nameAllocator.newName("bar")).isEqualTo("bar");
+    assertThat(nameAllocator.newName("qux")).isEqualTo("qux");
+  }
+
+  @Test public void resolveRejectsTagsThatAlreadyHaveNames() throws Exception {
+    nameAllocator.newName("foo", "taken");
+    nameAllocator.reserve("bar", "a", 1);
+    nameAllocator.reserve("baz", "taken", 2);
+    try {
+      nameAllocator.resolve();
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected).hasMessage("tag taken cannot be used for both 'foo' and 'baz'");
+    }
+    assertThat(nameAllocator.newName("bar")).isEqualTo("bar");
+  }
+}
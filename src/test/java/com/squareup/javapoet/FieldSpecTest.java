@@ -44,4 +44,14 @@ public class FieldSpecTest {
           .isEqualTo("annotationSpecs == null");
     }
   }
-}
\ No newline at end of file
+
+  @Test public void emptyMembersAreShared() {
+    FieldSpec a = FieldSpec.builder(int.class, "a").build();
+    FieldSpec b = FieldSpec.builder(int.class, "b", Modifier.PRIVATE).build();
+    assertThat(a.javadoc).isSameAs(b.javadoc);
+    assertThat(a.initializer).isSameAs(b.initializer);
+    assertThat(a.annotations).isSameAs(b.annotations);
+    assertThat(a.modifiers).isSameAs(FieldSpec.builder(int.class, "c").build().modifiers);
+    assertThat(b.modifiers).containsExactly(Modifier.PRIVATE);
+  }
+}
@@ -16,12 +16,17 @@
 package com.squareup.javapoet;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.net.URI;
-import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.lang.model.element.Modifier;
 import javax.tools.DiagnosticCollector;
 import javax.tools.JavaCompiler;
@@ -37,6 +42,7 @@ import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import com.google.common.io.ByteStreams;
+import com.google.common.io.CharStreams;
 
 import static com.google.common.truth.Truth.assertThat;
 
@@ -80,8 +86,53 @@ public class FileReadingTest {
         .build();
     byte[] bytes = ByteStreams.toByteArray(javaFile.toJavaFileObject().openInputStream());
     
-    // Be explicit with the default charset to assert the implicit behavior in the code
-    assertThat(bytes).isEqualTo(javaFile.toString().getBytes(Charset.defaultCharset()));
+    // The bytes are UTF-8 regardless of the platform's default charset.
+    assertThat(bytes).isEqualTo(javaFile.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test public void javaFileObjectReader() throws IOException {
+    JavaFile javaFile = JavaFile.builder("foo", TypeSpec.classBuilder("Test").build())
+        .addFileComment("\u00A9 Copyright character gets you everytime")
+        .build();
+    try (Reader reader = javaFile.toJavaFileObject().openReader(true)) {
+      assertThat(CharStreams.toString(reader)).isEqualTo(javaFile.toString());
+    }
+  }
+
+  @Test public void javaFileObjectContentIsCached() throws IOException {
+    JavaFile javaFile = JavaFile.builder("foo", TypeSpec.classBuilder("Test").build()).build();
+    JavaFileObject javaFileObject = javaFile.toJavaFileObject();
+    CharSequence content = javaFileObject.getCharContent(true);
+    assertThat(javaFileObject.getCharContent(false)).isSameAs(content);
+    assertThat(ByteStreams.toByteArray(javaFileObject.openInputStream()))
+        .isEqualTo(ByteStreams.toByteArray(javaFileObject.openInputStream()));
+  }
+
+  @Test public void javaFileObjectConcurrentReads() throws Exception {
+    TypeSpec.Builder type = TypeSpec.classBuilder("Test");
+    for (int i = 0; i < 100; i++) {
+      type.addField(int.class, "field" + i);
+    }
+    JavaFile javaFile = JavaFile.builder("foo", type.build()).build();
+    final JavaFileObject javaFileObject = javaFile.toJavaFileObject();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<CharSequence>> results = new ArrayList<>();
+      for (int i = 0; i < 32; i++) {
+        results.add(executor.submit(new Callable<CharSequence>() {
+          @Override public CharSequence call() throws IOException {
+            return javaFileObject.getCharContent(true);
+          }
+        }));
+      }
+      CharSequence first = results.get(0).get();
+      assertThat(first.toString()).isEqualTo(javaFile.toString());
+      for (Future<CharSequence> result : results) {
+        assertThat(result.get()).isSameAs(first);
+      }
+    } finally {
+      executor.shutdown();
+    }
   }
   
   @Test public void compileJavaFile() throws Exception {
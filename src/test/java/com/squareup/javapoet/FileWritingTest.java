@@ -19,9 +19,12 @@ import com.google.common.jimfs.Configuration;
 import com.google.common.jimfs.Jimfs;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.Date;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.Modifier;
@@ -196,4 +199,103 @@ public final class FileWritingTest {
         + "\t}\n"
         + "}\n");
   }
+
+  @Test public void pathIsUtf8() throws IOException {
+    TypeSpec type = TypeSpec.classBuilder("Test")
+        .addField(FieldSpec.builder(String.class, "s")
+            .initializer("$S", "caf\u00e9 \ud83c\udf7a")
+            .build())
+        .build();
+    JavaFile.builder("foo", type).build().writeTo(fsRoot);
+
+    Path testPath = fsRoot.resolve(fs.getPath("foo", "Test.java"));
+    String source = new String(Files.readAllBytes(testPath), StandardCharsets.UTF_8);
+    assertThat(source).contains("String s = \"caf\u00e9 \ud83c\udf7a\";");
+  }
+
+  @Test public void pathWithCharset() throws IOException {
+    TypeSpec type = TypeSpec.classBuilder("Test")
+        .addField(FieldSpec.builder(String.class, "s").initializer("$S", "caf\u00e9").build())
+        .build();
+    JavaFile javaFile = JavaFile.builder("foo", type).build();
+    javaFile.writeTo(fsRoot, StandardCharsets.ISO_8859_1);
+
+    Path testPath = fsRoot.resolve(fs.getPath("foo", "Test.java"));
+    byte[] bytes = Files.readAllBytes(testPath);
+    assertThat(bytes).isEqualTo(javaFile.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+    // Overwriting truncates the previous contents.
+    JavaFile.builder("foo", TypeSpec.classBuilder("Test").build()).build().writeTo(fsRoot);
+    assertThat(new String(Files.readAllBytes(testPath), StandardCharsets.UTF_8))
+        .isEqualTo("package foo;\n\nclass Test {\n}\n");
+  }
+
+  @Test public void writeToIfChangedSkipsIdenticalFile() throws IOException {
+    JavaFile javaFile = JavaFile.builder("foo", TypeSpec.classBuilder("Test").build()).build();
+    assertThat(javaFile.writeToIfChanged(fsRoot)).isTrue();
+
+    Path testPath = fsRoot.resolve(fs.getPath("foo", "Test.java"));
+    FileTime lastModified = FileTime.fromMillis(0);
+    Files.setLastModifiedTime(testPath, lastModified);
+    assertThat(javaFile.writeToIfChanged(fsRoot)).isFalse();
+    assertThat(Files.getLastModifiedTime(testPath)).isEqualTo(lastModified);
+  }
+
+  @Test public void writeToIfChangedRewritesChangedFile() throws IOException {
+    JavaFile javaFile = JavaFile.builder("foo", TypeSpec.classBuilder("Test").build()).build();
+    Path testPath = fsRoot.resolve(fs.getPath("foo", "Test.java"));
+    Files.createDirectories(testPath.getParent());
+
+    // Same length, different contents.
+    byte[] bytes = javaFile.toString().getBytes(StandardCharsets.UTF_8);
+    bytes[bytes.length - 3] = 'X';
+    Files.write(testPath, bytes);
+    assertThat(javaFile.writeToIfChanged(fsRoot)).isTrue();
+    assertThat(new String(Files.readAllBytes(testPath), StandardCharsets.UTF_8))
+        .isEqualTo(javaFile.toString());
+
+    // Different length.
+    Files.write(testPath, (javaFile.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+    assertThat(javaFile.writeToIfChanged(fsRoot)).isTrue();
+    assertThat(new String(Files.readAllBytes(testPath), StandardCharsets.UTF_8))
+        .isEqualTo(javaFile.toString());
+  }
+
+  @Test public void writeToIfChangedLargeFile() throws IOException {
+    TypeSpec.Builder type = TypeSpec.classBuilder("Test");
+    for (int i = 0; i < 1000; i++) {
+      type.addField(String.class, "field" + i);
+    }
+    JavaFile javaFile = JavaFile.builder("foo", type.build()).build();
+    assertThat(javaFile.writeToIfChanged(fsRoot, StandardCharsets.UTF_16)).isTrue();
+    assertThat(javaFile.writeToIfChanged(fsRoot, StandardCharsets.UTF_16)).isFalse();
+    assertThat(javaFile.writeToIfChanged(fsRoot)).isTrue();
+  }
+
+  @Test public void writeToIfChangedFailureLeavesFileUntouched() throws IOException {
+    Path testPath = fsRoot.resolve(fs.getPath("foo", "Test.java"));
+    Files.createDirectories(testPath.getParent());
+    Files.write(testPath, "original".getBytes(StandardCharsets.UTF_8));
+
+    final IllegalStateException failure = new IllegalStateException("broken");
+    Object literal = new Object() {
+      @Override public String toString() {
+        throw failure;
+      }
+    };
+    JavaFile javaFile = JavaFile.builder("foo", TypeSpec.classBuilder("Test")
+        .addStaticBlock(CodeBlock.of("$L;\n", literal))
+        .build()).build();
+    try {
+      javaFile.writeToIfChanged(fsRoot);
+      fail();
+    } catch (IllegalStateException expected) {
+      assertThat(expected).isSameAs(failure);
+    }
+    assertThat(new String(Files.readAllBytes(testPath), StandardCharsets.UTF_8))
+        .isEqualTo("original");
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(testPath.getParent())) {
+      assertThat(files).containsExactly(testPath);
+    }
+  }
 }
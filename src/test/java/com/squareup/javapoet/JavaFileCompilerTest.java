@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import javax.lang.model.element.Modifier;
+import javax.tools.Diagnostic;
+import org.junit.After;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public final class JavaFileCompilerTest {
+  private final JavaFileCompiler compiler = new JavaFileCompiler();
+
+  @After public void tearDown() throws Exception {
+    compiler.close();
+  }
+
+  private static JavaFile callable(String name, String value) {
+    TypeSpec type = TypeSpec.classBuilder(name)
+        .addModifiers(Modifier.PUBLIC)
+        .addSuperinterface(ParameterizedTypeName.get(Callable.class, String.class))
+        .addMethod(MethodSpec.methodBuilder("call")
+            .addModifiers(Modifier.PUBLIC)
+            .returns(String.class)
+            .addStatement("return $S", value)
+            .build())
+        .build();
+    return JavaFile.builder("com.example", type).build();
+  }
+
+  private static Object call(ClassLoader loader, String className) throws Exception {
+    Callable<?> callable = (Callable<?>) loader.loadClass(className).newInstance();
+    return callable.call();
+  }
+
+  @Test public void load() throws Exception {
+    ClassLoader loader = compiler.load(
+        Arrays.asList(callable("A", "a"), callable("B", "b")), getClass().getClassLoader());
+    assertThat(call(loader, "com.example.A")).isEqualTo("a");
+    assertThat(call(loader, "com.example.B")).isEqualTo("b");
+  }
+
+  @Test public void compileIncludesNestedTypes() throws Exception {
+    JavaFile javaFile = JavaFile.builder("com.example", TypeSpec.classBuilder("Outer")
+        .addType(TypeSpec.classBuilder("Inner").addModifiers(Modifier.STATIC).build())
+        .build()).build();
+    Map<String, byte[]> classes = compiler.compile(Collections.singletonList(javaFile));
+    assertThat(classes.keySet()).containsExactly("com.example.Outer", "com.example.Outer$Inner");
+  }
+
+  @Test public void unchangedBatchIsNotRecompiled() throws Exception {
+    List<JavaFile> batch = Arrays.asList(callable("A", "a"), callable("B", "b"));
+    Map<String, byte[]> first = compiler.compile(batch);
+    assertThat(compiler.missCount()).isEqualTo(1);
+
+    // Equal specs in a different order are the same batch.
+    Map<String, byte[]> second = compiler.compile(
+        Arrays.asList(callable("B", "b"), callable("A", "a")));
+    assertThat(compiler.hitCount()).isEqualTo(1);
+    assertThat(compiler.missCount()).isEqualTo(1);
+    assertThat(second.get("com.example.A")).isEqualTo(first.get("com.example.A"));
+
+    ClassLoader loader = compiler.load(
+        Arrays.asList(callable("A", "a"), callable("B", "changed")), getClass().getClassLoader());
+    assertThat(compiler.missCount()).isEqualTo(2);
+    assertThat(call(loader, "com.example.B")).isEqualTo("changed");
+  }
+
+  @Test public void compiledBytesAreCopied() throws Exception {
+    List<JavaFile> batch = Collections.singletonList(callable("A", "a"));
+    byte[] bytes = compiler.compile(batch).get("com.example.A");
+    bytes[0] = 0;
+    ClassLoader loader = compiler.load(batch, getClass().getClassLoader());
+    assertThat(call(loader, "com.example.A")).isEqualTo("a");
+  }
+
+  @Test public void compilationFailure() throws Exception {
+    JavaFile javaFile = JavaFile.builder("com.example", TypeSpec.classBuilder("Broken")
+        .addMethod(MethodSpec.methodBuilder("broken")
+            .returns(String.class)
+            .addStatement("return 1")
+            .build())
+        .build()).build();
+    try {
+      compiler.compile(Collections.singletonList(javaFile));
+      fail();
+    } catch (JavaFileCompiler.CompilationException expected) {
+      assertThat(expected.diagnostics).isNotEmpty();
+      assertThat(expected.diagnostics.get(0).getKind()).isEqualTo(Diagnostic.Kind.ERROR);
+      assertThat(expected.getMessage()).startsWith("compilation failed\n");
+    }
+  }
+
+  @Test public void duplicateFilesRejected() throws Exception {
+    try {
+      compiler.compile(Arrays.asList(callable("A", "a"), callable("A", "b")));
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected).hasMessage("more than one file for com/example/A.java");
+    }
+  }
+}
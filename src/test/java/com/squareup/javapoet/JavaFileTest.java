@@ -15,8 +15,12 @@
  */
 package com.squareup.javapoet;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import javax.lang.model.element.Modifier;
 import org.junit.Ignore;
@@ -573,4 +577,132 @@ public final class JavaFileTest {
         + "  }\n"
         + "}\n");
   }
+
+  @Test public void importsInWrappedStatementsAndStringLiterals() throws Exception {
+    TypeSpec comparator = TypeSpec.anonymousClassBuilder("")
+        .addSuperinterface(ParameterizedTypeName.get(Comparator.class, String.class))
+        .addMethod(MethodSpec.methodBuilder("compare")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .returns(int.class)
+            .addParameter(String.class, "a")
+            .addParameter(String.class, "b")
+            .addStatement("return $T.compare(a.length(), b.length())", Integer.class)
+            .build())
+        .build();
+    String source = JavaFile.builder("com.squareup.tacos",
+        TypeSpec.classBuilder("Taco")
+            .addMethod(MethodSpec.methodBuilder("sort")
+                .addParameter(ParameterizedTypeName.get(List.class, String.class), "toppings")
+                .addStatement("$T.sort(toppings,\n$L)", Collections.class, comparator)
+                .addStatement("$T.out.println($S\n+ toppings)", System.class, "Toppings:\nall\n")
+                .build())
+            .build())
+        .build()
+        .toString();
+    assertThat(source).isEqualTo(""
+        + "package com.squareup.tacos;\n"
+        + "\n"
+        + "import java.lang.Integer;\n"
+        + "import java.lang.Override;\n"
+        + "import java.lang.String;\n"
+        + "import java.lang.System;\n"
+        + "import java.util.Collections;\n"
+        + "import java.util.Comparator;\n"
+        + "import java.util.List;\n"
+        + "\n"
+        + "class Taco {\n"
+        + "  void sort(List<String> toppings) {\n"
+        + "    Collections.sort(toppings,\n"
+        + "        new Comparator<String>() {\n"
+        + "          @Override\n"
+        + "          public int compare(String a, String b) {\n"
+        + "            return Integer.compare(a.length(), b.length());\n"
+        + "          }\n"
+        + "        });\n"
+        + "    System.out.println(\"Toppings:\\n\"\n"
+        + "            + \"all\\n\"\n"
+        + "        + toppings);\n"
+        + "  }\n"
+        + "}\n");
+  }
+
+  @Test public void customIndentAtManyLevels() throws Exception {
+    TypeSpec type = TypeSpec.classBuilder("Taco").build();
+    for (int i = 0; i < 3; i++) {
+      type = TypeSpec.classBuilder("Taco" + i)
+          .addModifiers(Modifier.STATIC)
+          .addType(type)
+          .build();
+    }
+    String source = JavaFile.builder("com.squareup.tacos", type)
+        .indent("\t")
+        .build()
+        .toString();
+    assertThat(source).isEqualTo(""
+        + "package com.squareup.tacos;\n"
+        + "\n"
+        + "static class Taco2 {\n"
+        + "\tstatic class Taco1 {\n"
+        + "\t\tstatic class Taco0 {\n"
+        + "\t\t\tclass Taco {\n"
+        + "\t\t\t}\n"
+        + "\t\t}\n"
+        + "\t}\n"
+        + "}\n");
+  }
+
+  @Test public void equalsAndHashCode() {
+    TypeSpec taco = TypeSpec.classBuilder("Taco")
+        .addField(Date.class, "madeFreshDate")
+        .build();
+    JavaFile a = JavaFile.builder("com.squareup.tacos", taco).build();
+    JavaFile b = JavaFile.builder("com.squareup.tacos", taco.toBuilder().build()).build();
+    assertThat(a.equals(b)).isTrue();
+    assertThat(a.hashCode()).isEqualTo(b.hashCode());
+
+    assertThat(a.equals(JavaFile.builder("com.squareup.burritos", taco).build())).isFalse();
+    assertThat(a.equals(a.toBuilder().indent("\t").build())).isFalse();
+    assertThat(a.equals(a.toBuilder().addFileComment("Generated.").build())).isFalse();
+
+    assertThat(a.equals(a.toBuilder().addStaticImport(TimeUnit.class, "SECONDS").build()))
+        .isFalse();
+
+    // Settings that don't change the output don't affect equality.
+    JavaFile skipping = a.toBuilder().skipJavaLangImports(true).build();
+    assertThat(a.equals(skipping)).isTrue();
+    assertThat(a.hashCode()).isEqualTo(skipping.hashCode());
+    JavaFile empty = JavaFile.builder("com.squareup.tacos", TypeSpec.classBuilder("Taco").build())
+        .build();
+    JavaFile tabs = empty.toBuilder().indent("\t").build();
+    assertThat(empty.equals(tabs)).isTrue();
+    assertThat(empty.hashCode()).isEqualTo(tabs.hashCode());
+
+    TypeSpec threaded = TypeSpec.classBuilder("Taco")
+        .addField(Thread.State.class, "state")
+        .build();
+    JavaFile c = JavaFile.builder("com.squareup.tacos", threaded).build();
+    assertThat(c.equals(c.toBuilder().skipJavaLangImports(true).build())).isFalse();
+  }
+
+  @Test public void fingerprint() throws Exception {
+    TypeSpec.Builder taco = TypeSpec.classBuilder("Taco")
+        .addField(FieldSpec.builder(String.class, "name")
+            .initializer("$S", "Carne As\u00e1da \ud83c\udf2e")
+            .build());
+    for (int i = 0; i < 500; i++) {
+      taco.addField(Date.class, "madeFreshDate" + i);
+    }
+    JavaFile javaFile = JavaFile.builder("com.squareup.tacos", taco.build()).build();
+    byte[] bytes = javaFile.toString().getBytes(StandardCharsets.UTF_8);
+
+    assertThat(javaFile.fingerprint())
+        .isEqualTo(MessageDigest.getInstance("SHA-256").digest(bytes));
+    MessageDigest md5 = MessageDigest.getInstance("MD5");
+    md5.update(new byte[] {1, 2, 3}); // Reset before use.
+    assertThat(javaFile.fingerprint(md5)).isEqualTo(MessageDigest.getInstance("MD5").digest(bytes));
+
+    assertThat(javaFile.toBuilder().indent("\t").build().fingerprint())
+        .isNotEqualTo(javaFile.fingerprint());
+  }
 }
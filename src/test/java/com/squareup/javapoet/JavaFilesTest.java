@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import javax.lang.model.element.Element;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public final class JavaFilesTest {
+  private final FileSystem fs = Jimfs.newFileSystem(Configuration.unix());
+  private final Path fsRoot = fs.getRootDirectories().iterator().next();
+  private final Executor directExecutor = new Executor() {
+    @Override public void execute(Runnable command) {
+      command.run();
+    }
+  };
+
+  private List<JavaFile> javaFiles(String... names) {
+    List<JavaFile> result = new ArrayList<>();
+    for (String name : names) {
+      result.add(JavaFile.builder("foo", TypeSpec.classBuilder(name).build()).build());
+    }
+    return result;
+  }
+
+  @Test public void writeAllIfChanged() throws IOException {
+    JavaFiles.WriteResult first = JavaFiles.writeAllIfChanged(javaFiles("A", "B"), fsRoot);
+    assertThat(first.writtenCount).isEqualTo(2);
+    assertThat(first.skippedCount).isEqualTo(0);
+
+    List<JavaFile> javaFiles = javaFiles("A", "B", "C");
+    javaFiles.set(1, JavaFile.builder("foo", TypeSpec.classBuilder("B")
+        .addField(int.class, "changed")
+        .build()).build());
+    JavaFiles.WriteResult second = JavaFiles.writeAllIfChanged(javaFiles, fsRoot);
+    assertThat(second.writtenCount).isEqualTo(2);
+    assertThat(second.skippedCount).isEqualTo(1);
+    assertThat(second.toString()).isEqualTo("WriteResult{written=2, skipped=1}");
+  }
+
+  @Test public void writeAllInParallel() throws Exception {
+    List<JavaFile> javaFiles = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      TypeSpec type = TypeSpec.classBuilder("Type" + i).addField(int.class, "field" + i).build();
+      javaFiles.add(JavaFile.builder(i % 5 == 0 ? "" : "foo.bar" + (i % 5), type).build());
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      JavaFiles.WriteResult result = JavaFiles.writeAll(javaFiles, fsRoot, executor);
+      assertThat(result.writtenCount).isEqualTo(100);
+      assertThat(result.skippedCount).isEqualTo(0);
+    } finally {
+      executor.shutdown();
+    }
+
+    for (JavaFile javaFile : javaFiles) {
+      Path path = JavaFile.packageDirectory(fsRoot, javaFile.packageName)
+          .resolve(javaFile.typeSpec.name + ".java");
+      assertThat(new String(Files.readAllBytes(path), StandardCharsets.UTF_8))
+          .isEqualTo(javaFile.toString());
+    }
+  }
+
+  @Test public void writeAllReportsFailuresPerFile() throws Exception {
+    // A directory where a source file belongs makes that one file fail.
+    Files.createDirectories(fsRoot.resolve(fs.getPath("foo", "B.java")));
+
+    try {
+      JavaFiles.writeAll(javaFiles("A", "B", "C"), fsRoot, directExecutor);
+      fail();
+    } catch (JavaFiles.WriteException expected) {
+      Path b = fsRoot.resolve(fs.getPath("foo", "B.java"));
+      assertThat(expected.failures.keySet()).containsExactly(b);
+      assertThat(expected.getMessage())
+          .isEqualTo("could not write 1 of 3 files, including /foo/B.java");
+      assertThat(expected.result.writtenCount).isEqualTo(2);
+    }
+    assertThat(Files.exists(fsRoot.resolve(fs.getPath("foo", "A.java")))).isTrue();
+    assertThat(Files.exists(fsRoot.resolve(fs.getPath("foo", "C.java")))).isTrue();
+  }
+
+  @Test public void writeAllReportsRejectedFiles() throws Exception {
+    Executor rejecting = new Executor() {
+      @Override public void execute(Runnable command) {
+        throw new RejectedExecutionException("full");
+      }
+    };
+    try {
+      JavaFiles.writeAll(javaFiles("A", "B"), fsRoot, rejecting);
+      fail();
+    } catch (JavaFiles.WriteException expected) {
+      assertThat(expected.failures).hasSize(2);
+      assertThat(expected.getCause()).hasMessage("full");
+      assertThat(expected.getSuppressed()).hasLength(1);
+    }
+  }
+
+  @Test public void writeAllRejectsDuplicatePaths() throws Exception {
+    try {
+      JavaFiles.writeAll(javaFiles("A", "A"), fsRoot, directExecutor);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected).hasMessage("more than one file would be written to /foo/A.java");
+    }
+    assertThat(Files.exists(fsRoot.resolve(fs.getPath("foo", "A.java")))).isFalse();
+  }
+
+  @Test public void writeAllToFiler() throws Exception {
+    TestFiler filer = new TestFiler(fs, fsRoot);
+    Element element = Mockito.mock(Element.class);
+    List<JavaFile> javaFiles = javaFiles("A", "B");
+    javaFiles.add(JavaFile.builder("foo.bar", TypeSpec.classBuilder("C")
+        .addOriginatingElement(element)
+        .build()).build());
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      JavaFiles.writeAll(javaFiles, filer, executor);
+    } finally {
+      executor.shutdown();
+    }
+
+    for (JavaFile javaFile : javaFiles) {
+      Path path = fsRoot.resolve(javaFile.packageName.replace('.', '/'))
+          .resolve(javaFile.typeSpec.name + ".java");
+      assertThat(new String(Files.readAllBytes(path), StandardCharsets.UTF_8))
+          .isEqualTo(javaFile.toString());
+    }
+    Path cPath = fsRoot.resolve(fs.getPath("foo", "bar", "C.java"));
+    assertThat(filer.getOriginatingElements(cPath)).containsExactly(element);
+  }
+
+  @Test public void writeAllToFilerRendersBeforeWriting() throws Exception {
+    TestFiler filer = new TestFiler(fs, fsRoot);
+    final RejectedExecutionException rejected = new RejectedExecutionException("full");
+    Executor executor = new Executor() {
+      int count;
+      @Override public void execute(Runnable command) {
+        if (count++ == 1) throw rejected;
+        command.run();
+      }
+    };
+    try {
+      JavaFiles.writeAll(javaFiles("A", "B", "C"), filer, executor);
+      fail();
+    } catch (RejectedExecutionException expected) {
+      assertThat(expected).isSameAs(rejected);
+    }
+    assertThat(Files.exists(fsRoot.resolve("foo"))).isFalse();
+  }
+
+  @Test public void writeAllRethrowsErrors() throws Exception {
+    final AssertionError error = new AssertionError("broken");
+    Object literal = new Object() {
+      @Override public String toString() {
+        throw error;
+      }
+    };
+    List<JavaFile> javaFiles = javaFiles("A", "C");
+    javaFiles.add(1, JavaFile.builder("foo", TypeSpec.classBuilder("B")
+        .addStaticBlock(CodeBlock.of("$L;\n", literal))
+        .build()).build());
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      JavaFiles.writeAll(javaFiles, fsRoot, executor);
+      fail();
+    } catch (AssertionError expected) {
+      assertThat(expected).isSameAs(error);
+    } finally {
+      executor.shutdown();
+    }
+    // The other files were still written.
+    assertThat(Files.exists(fsRoot.resolve(fs.getPath("foo", "A.java")))).isTrue();
+    assertThat(Files.exists(fsRoot.resolve(fs.getPath("foo", "C.java")))).isTrue();
+  }
+}
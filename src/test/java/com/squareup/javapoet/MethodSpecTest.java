@@ -239,4 +239,45 @@ public final class MethodSpecTest {
       .isEqualTo(Arrays.asList(ioException, timeoutException));
   }
 
+  @Test public void equalsComparesExceptionsInOrder() {
+    ClassName ioException = ClassName.get(IOException.class);
+    ClassName timeoutException = ClassName.get(TimeoutException.class);
+    MethodSpec a = MethodSpec.methodBuilder("taco")
+        .addException(ioException)
+        .addException(timeoutException)
+        .build();
+    MethodSpec b = MethodSpec.methodBuilder("taco")
+        .addException(timeoutException)
+        .addException(ioException)
+        .build();
+    assertThat(a.toString()).isNotEqualTo(b.toString());
+    assertThat(a.equals(b)).isFalse();
+    assertThat(a.equals(b.toBuilder().build())).isFalse();
+    assertThat(a.equals(a.toBuilder().build())).isTrue();
+  }
+
+  @Test public void equalsTreatsMissingDefaultValueAsEmpty() {
+    MethodSpec a = MethodSpec.methodBuilder("value")
+        .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+        .build();
+    MethodSpec b = MethodSpec.methodBuilder("value")
+        .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+        .defaultValue(CodeBlock.builder().build())
+        .build();
+    assertThat(a.toString()).isEqualTo(b.toString());
+    assertThat(a.equals(b)).isTrue();
+    assertThat(a.hashCode()).isEqualTo(b.hashCode());
+    MethodSpec c = a.toBuilder().defaultValue("$L", 1).build();
+    assertThat(a.equals(c)).isFalse();
+  }
+
+  @Test public void emptyMembersAreShared() {
+    MethodSpec a = MethodSpec.methodBuilder("a").build();
+    MethodSpec b = MethodSpec.methodBuilder("b").addModifiers(Modifier.ABSTRACT).build();
+    assertThat(a.javadoc).isSameAs(b.javadoc);
+    assertThat(a.code).isSameAs(b.code);
+    assertThat(a.parameters).isSameAs(b.parameters);
+    assertThat(a.exceptions).isSameAs(b.exceptions);
+    assertThat(a.toBuilder().build().code).isSameAs(a.code);
+  }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import javax.lang.model.element.Modifier;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public final class ModifierSetTest {
+  @Test public void iteratesInDeclarationOrder() {
+    ModifierSet set = ModifierSet.of(
+        Arrays.asList(Modifier.FINAL, Modifier.STATIC, Modifier.PUBLIC));
+    assertThat(set).containsExactly(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL).inOrder();
+    assertThat(set).hasSize(3);
+    assertThat(set.source).isEqualTo("public static final ");
+  }
+
+  @Test public void interned() {
+    assertThat(ModifierSet.of(Modifier.PUBLIC, Modifier.STATIC))
+        .isSameAs(ModifierSet.of(Arrays.asList(Modifier.STATIC, Modifier.PUBLIC, Modifier.STATIC)));
+    assertThat(ModifierSet.of()).isSameAs(ModifierSet.EMPTY);
+    assertThat(ModifierSet.EMPTY.source).isEmpty();
+  }
+
+  @Test public void equalsOtherSets() {
+    ModifierSet set = ModifierSet.of(Modifier.PRIVATE, Modifier.FINAL);
+    Set<Modifier> hashSet = new HashSet<>(Arrays.asList(Modifier.FINAL, Modifier.PRIVATE));
+    assertThat(set).isEqualTo(hashSet);
+    assertThat(hashSet).isEqualTo(set);
+    assertThat(set.hashCode()).isEqualTo(hashSet.hashCode());
+    assertThat(set).isNotEqualTo(EnumSet.of(Modifier.PRIVATE));
+  }
+
+  @Test public void contains() {
+    ModifierSet set = ModifierSet.of(Modifier.PUBLIC, Modifier.ABSTRACT);
+    assertThat(set.contains(Modifier.ABSTRACT)).isTrue();
+    assertThat(set.contains(Modifier.STATIC)).isFalse();
+    assertThat(set.contains("abstract")).isFalse();
+    assertThat(set.containsAll(ModifierSet.of(Modifier.PUBLIC))).isTrue();
+    assertThat(set.containsAll(EnumSet.of(Modifier.PUBLIC, Modifier.STATIC))).isFalse();
+  }
+
+  @Test public void sourceOmitsImplicitModifiers() {
+    ModifierSet set = ModifierSet.of(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL);
+    assertThat(set.source(ModifierSet.EMPTY)).isEqualTo("public static final ");
+    assertThat(set.source(EnumSet.of(Modifier.PUBLIC, Modifier.ABSTRACT)))
+        .isEqualTo("static final ");
+    assertThat(set.source(set)).isEmpty();
+  }
+
+  @Test public void immutable() {
+    Set<Modifier> set = ModifierSet.of(Modifier.PUBLIC);
+    try {
+      set.add(Modifier.STATIC);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    try {
+      set.iterator().remove();
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  @Test public void nullRejected() {
+    try {
+      ModifierSet.of(Arrays.asList(Modifier.PUBLIC, null));
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected).hasMessage("modifiers contain null");
+    }
+  }
+}
@@ -36,6 +36,24 @@ public final class NameAllocatorTest {
     assertThat(nameAllocator.newName("foo")).isEqualTo("foo__");
   }
 
+  @Test public void manyCollisions() throws Exception {
+    NameAllocator nameAllocator = new NameAllocator();
+    String expected = "value";
+    for (int i = 0; i < 100; i++) {
+      assertThat(nameAllocator.newName("value")).isEqualTo(expected);
+      expected += "_";
+    }
+  }
+
+  @Test public void nameCollisionWithSuppliedSuffix() throws Exception {
+    NameAllocator nameAllocator = new NameAllocator();
+    assertThat(nameAllocator.newName("foo_")).isEqualTo("foo_");
+    assertThat(nameAllocator.newName("foo")).isEqualTo("foo");
+    assertThat(nameAllocator.newName("foo")).isEqualTo("foo__");
+    assertThat(nameAllocator.newName("foo_")).isEqualTo("foo___");
+    assertThat(nameAllocator.newName("foo")).isEqualTo("foo____");
+  }
+
   @Test public void nameCollisionWithTag() throws Exception {
     NameAllocator nameAllocator = new NameAllocator();
     assertThat(nameAllocator.newName("foo", 1)).isEqualTo("foo");
@@ -70,6 +88,7 @@ public final class NameAllocatorTest {
     NameAllocator nameAllocator = new NameAllocator();
     assertThat(nameAllocator.newName("public", 1)).isEqualTo("public_");
     assertThat(nameAllocator.get(1)).isEqualTo("public_");
+    assertThat(nameAllocator.newName("public", 2)).isEqualTo("public__");
   }
 
   @Test public void tagReuseForbidden() throws Exception {
@@ -105,4 +124,50 @@ public final class NameAllocatorTest {
     assertThat(innerAllocator2.newName("foo", 2)).isEqualTo("foo_");
     assertThat(innerAllocator2.newName("bar", 3)).isEqualTo("bar");
   }
+
+  @Test public void scopeUsage() throws Exception {
+    NameAllocator outerAllocator = new NameAllocator();
+    outerAllocator.newName("foo", 1);
+
+    NameAllocator innerAllocator1 = outerAllocator.newScope();
+    assertThat(innerAllocator1.newName("bar", 2)).isEqualTo("bar");
+    assertThat(innerAllocator1.newName("foo", 3)).isEqualTo("foo_");
+    assertThat(innerAllocator1.get(1)).isEqualTo("foo");
+
+    NameAllocator innerAllocator2 = outerAllocator.newScope();
+    assertThat(innerAllocator2.newName("foo", 2)).isEqualTo("foo_");
+    assertThat(innerAllocator2.newName("bar", 3)).isEqualTo("bar");
+
+    try {
+      outerAllocator.get(2);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected).hasMessage("unknown tag: 2");
+    }
+    assertThat(outerAllocator.newName("bar", 2)).isEqualTo("bar");
+  }
+
+  @Test public void nestedScopes() throws Exception {
+    NameAllocator allocator = new NameAllocator();
+    for (int depth = 0; depth < 5; depth++) {
+      allocator = allocator.newScope();
+      allocator.newName("value", depth);
+    }
+    assertThat(allocator.get(0)).isEqualTo("value");
+    assertThat(allocator.get(4)).isEqualTo("value____");
+    assertThat(allocator.newName("value")).isEqualTo("value_____");
+  }
+
+  @Test public void scopeTagReuseForbidden() throws Exception {
+    NameAllocator outerAllocator = new NameAllocator();
+    outerAllocator.newName("foo", 1);
+    NameAllocator innerAllocator = outerAllocator.newScope();
+    try {
+      innerAllocator.newName("bar", 1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected).hasMessage("tag 1 cannot be used for both 'foo' and 'bar'");
+    }
+    assertThat(innerAllocator.get(1)).isEqualTo("foo");
+  }
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public final class ReplacingFileChannelTest {
+  private final FileSystem fs = Jimfs.newFileSystem(Configuration.unix());
+  private final Path path = fs.getPath("/foo/Test.java");
+
+  @Before public void setUp() throws IOException {
+    Files.createDirectories(path.getParent());
+  }
+
+  /** Writes {@code chunks} to a channel for {@link #path} and commits it. */
+  private boolean replace(String... chunks) throws IOException {
+    ReplacingFileChannel channel = new ReplacingFileChannel(path);
+    try {
+      for (String chunk : chunks) {
+        ByteBuffer buffer = ByteBuffer.wrap(chunk.getBytes(UTF_8));
+        assertThat(channel.write(buffer)).isEqualTo(chunk.length());
+        assertThat(buffer.hasRemaining()).isFalse();
+      }
+      channel.close();
+      return channel.commit();
+    } finally {
+      channel.release();
+    }
+  }
+
+  private String contents() throws IOException {
+    return new String(Files.readAllBytes(path), UTF_8);
+  }
+
+  private List<String> files() throws IOException {
+    List<String> result = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(path.getParent())) {
+      for (Path file : stream) {
+        result.add(file.getFileName().toString());
+      }
+    }
+    return result;
+  }
+
+  @Test public void createsMissingFile() throws IOException {
+    assertThat(replace("abc", "def")).isTrue();
+    assertThat(contents()).isEqualTo("abcdef");
+    assertThat(files()).containsExactly("Test.java");
+  }
+
+  @Test public void skipsIdenticalFile() throws IOException {
+    Files.write(path, "abcdef".getBytes(UTF_8));
+    FileTime lastModified = FileTime.fromMillis(0);
+    Files.setLastModifiedTime(path, lastModified);
+    assertThat(replace("ab", "cde", "f")).isFalse();
+    assertThat(Files.getLastModifiedTime(path)).isEqualTo(lastModified);
+    assertThat(files()).containsExactly("Test.java");
+  }
+
+  @Test public void keepsMatchingPrefix() throws IOException {
+    Files.write(path, "abcdef".getBytes(UTF_8));
+    assertThat(replace("abc", "dXf", "ghi")).isTrue();
+    assertThat(contents()).isEqualTo("abcdXfghi");
+    assertThat(files()).containsExactly("Test.java");
+  }
+
+  @Test public void replacesShorterFile() throws IOException {
+    Files.write(path, "abc".getBytes(UTF_8));
+    assertThat(replace("ab", "cdef")).isTrue();
+    assertThat(contents()).isEqualTo("abcdef");
+  }
+
+  @Test public void replacesLongerFile() throws IOException {
+    Files.write(path, "abcdef".getBytes(UTF_8));
+    assertThat(replace("abc")).isTrue();
+    assertThat(contents()).isEqualTo("abc");
+  }
+
+  @Test public void releaseWithoutCommitLeavesFileUntouched() throws IOException {
+    Files.write(path, "abcdef".getBytes(UTF_8));
+    ReplacingFileChannel channel = new ReplacingFileChannel(path);
+    channel.write(ByteBuffer.wrap("abX".getBytes(UTF_8)));
+    assertThat(files()).hasSize(2);
+    channel.release();
+    assertThat(contents()).isEqualTo("abcdef");
+    assertThat(files()).containsExactly("Test.java");
+  }
+}
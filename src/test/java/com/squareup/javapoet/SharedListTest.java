@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public final class SharedListTest {
+  @Test public void buildIsASnapshot() {
+    SharedList.Builder<String> builder = new SharedList.Builder<>();
+    builder.add("a");
+    builder.add("b");
+    List<String> first = builder.build();
+    builder.add("c");
+    List<String> second = builder.build();
+    assertThat(first).containsExactly("a", "b").inOrder();
+    assertThat(second).containsExactly("a", "b", "c").inOrder();
+  }
+
+  @Test public void forkedBuildersDoNotInterfere() {
+    SharedList.Builder<String> builder = new SharedList.Builder<>();
+    builder.addAll(Arrays.asList("a", "b"));
+    SharedList<String> base = builder.build();
+
+    SharedList.Builder<String> left = new SharedList.Builder<>();
+    left.addAll(base);
+    left.add("left");
+    SharedList.Builder<String> right = new SharedList.Builder<>();
+    right.addAll(base);
+    right.add("right");
+
+    assertThat(base).containsExactly("a", "b").inOrder();
+    assertThat(left.build()).containsExactly("a", "b", "left").inOrder();
+    assertThat(right.build()).containsExactly("a", "b", "right").inOrder();
+  }
+
+  @Test public void setDoesNotChangeSnapshots() {
+    SharedList.Builder<String> builder = new SharedList.Builder<>();
+    builder.addAll(Arrays.asList("a", "b"));
+    SharedList<String> before = builder.build();
+    assertThat(builder.set(0, "z")).isEqualTo("a");
+    assertThat(before).containsExactly("a", "b").inOrder();
+    assertThat(builder.build()).containsExactly("z", "b").inOrder();
+  }
+
+  @Test public void sharedListIsImmutable() {
+    SharedList.Builder<String> builder = new SharedList.Builder<>();
+    builder.add("a");
+    List<String> list = builder.build();
+    try {
+      list.add("b");
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    try {
+      list.get(1);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+  }
+
+  @Test public void equalsAndHashCode() {
+    SharedList.Builder<String> builder = new SharedList.Builder<>();
+    builder.addAll(Arrays.asList("a", "b"));
+    List<String> list = builder.build();
+    assertThat(list).isEqualTo(Arrays.asList("a", "b"));
+    assertThat(list.hashCode()).isEqualTo(Arrays.asList("a", "b").hashCode());
+  }
+}
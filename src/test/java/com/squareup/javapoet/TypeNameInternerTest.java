@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public final class TypeNameInternerTest {
+  private final TypeNameInterner interner = new TypeNameInterner();
+
+  @Test public void equalTypeNamesShareAnInstance() {
+    ParameterizedTypeName a = interner.intern(ParameterizedTypeName.get(List.class, String.class));
+    ParameterizedTypeName b = interner.intern(ParameterizedTypeName.get(List.class, String.class));
+    assertThat(b).isSameAs(a);
+    ClassName c = interner.intern(ClassName.get(String.class));
+    ClassName d = interner.intern(ClassName.get("java.lang", "String"));
+    assertThat(d).isSameAs(c);
+    assertThat(interner.size()).isEqualTo(2);
+  }
+
+  @Test public void differentTypeNamesAreKept() {
+    TypeName a = interner.intern(ParameterizedTypeName.get(Map.class, String.class, Long.class));
+    TypeName b = interner.intern(ParameterizedTypeName.get(Map.class, Long.class, String.class));
+    TypeName c = interner.intern(ClassName.get(String.class).annotated(
+        AnnotationSpec.builder(Deprecated.class).build()));
+    TypeName d = interner.intern(ClassName.get(String.class));
+    assertThat(b).isNotSameAs(a);
+    assertThat(d).isNotSameAs(c);
+    assertThat(interner.size()).isEqualTo(4);
+  }
+
+  @Test public void unusedTypeNamesAreReleased() throws Exception {
+    interner.intern(ParameterizedTypeName.get(List.class, String.class));
+    for (int i = 0; i < 10 && interner.size() > 0; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertThat(interner.size()).isEqualTo(0);
+  }
+
+  @Test public void nullTypeName() {
+    try {
+      interner.intern(null);
+      fail();
+    } catch (NullPointerException expected) {
+      assertThat(expected).hasMessage("typeName == null");
+    }
+  }
+
+  @Test public void typeVariableBoundsAreKept() {
+    TypeNameInterner interner = new TypeNameInterner();
+    interner.intern(TypeVariableName.get("T"));
+    TypeVariableName bounded = TypeVariableName.get("T", Number.class);
+    assertThat(interner.intern(bounded)).isSameAs(bounded);
+    assertThat(interner.intern(bounded).bounds).containsExactly(ClassName.get(Number.class));
+
+    ClassName list = ClassName.get("java.util", "List");
+    interner.intern(ParameterizedTypeName.get(list, TypeVariableName.get("T")));
+    ParameterizedTypeName listOfBounded = ParameterizedTypeName.get(list, bounded);
+    assertThat(interner.intern(listOfBounded)).isSameAs(listOfBounded);
+
+    MethodSpec method = MethodSpec.methodBuilder("sum")
+        .addTypeVariable(interner.intern(bounded))
+        .build();
+    assertThat(method.toString()).isEqualTo("<T extends java.lang.Number> void sum() {\n}\n");
+  }
+}
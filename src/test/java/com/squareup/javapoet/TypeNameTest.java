@@ -16,9 +16,14 @@
 package com.squareup.javapoet;
 
 import java.io.Serializable;
+import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import org.junit.Test;
@@ -26,6 +31,7 @@ import org.junit.Test;
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
 
 public class TypeNameTest {
 
@@ -174,6 +180,112 @@ public class TypeNameTest {
     assertThat(ClassName.get("java.lang", "Void").isBoxedPrimitive()).isFalse();
   }
 
+  @Test public void unbox() throws Exception {
+    assertThat(ClassName.get("java.lang", "Integer").unbox()).isEqualTo(TypeName.INT);
+    assertThat(ClassName.get(Void.class).unbox()).isEqualTo(TypeName.VOID);
+    assertThat(TypeName.DOUBLE.unbox()).isSameAs(TypeName.DOUBLE);
+    try {
+      ClassName.get("java.lang", "String").unbox();
+      fail();
+    } catch (UnsupportedOperationException expected) {
+      assertThat(expected).hasMessage("cannot unbox java.lang.String");
+    }
+  }
+
+  @Test public void equalsAgreesWithToString() throws Exception {
+    AnnotationSpec annotation = AnnotationSpec.builder(Deprecated.class).build();
+    ClassName map = ClassName.get("java.util", "Map");
+    ParameterizedTypeName outer = ParameterizedTypeName.get(ClassName.get("a", "Outer"),
+        TypeName.get(String.class));
+    TypeName[] typeNames = {
+        TypeName.INT,
+        TypeName.INT.annotated(annotation),
+        ClassName.get(String.class),
+        ClassName.get("java.lang", "String"),
+        ClassName.get("java", "lang", "String"),
+        ClassName.get(String.class).annotated(annotation),
+        ClassName.get("", "String"),
+        map.nestedClass("Entry"),
+        ParameterizedTypeName.get(map, TypeName.get(String.class), TypeName.INT.box()),
+        ParameterizedTypeName.get(Map.class, String.class, Integer.class),
+        ParameterizedTypeName.get(map.annotated(Arrays.asList(annotation)), TypeName.get(String.class),
+            TypeName.INT.box()),
+        ParameterizedTypeName.get(Map.class, Integer.class, String.class),
+        outer.nestedClass("Inner"),
+        ParameterizedTypeName.get(ClassName.get("a", "Outer"), TypeName.get(String.class))
+            .nestedClass("Inner"),
+        outer.nestedClass("Inner", Arrays.<TypeName>asList(TypeName.get(String.class))),
+        ParameterizedTypeName.get(ClassName.get("b", "Outer"), TypeName.get(String.class))
+            .nestedClass("Inner"),
+        ArrayTypeName.of(int.class),
+        ArrayTypeName.of(TypeName.INT.annotated(annotation)),
+        ArrayTypeName.of(String.class),
+        ArrayTypeName.of(ArrayTypeName.of(String.class)),
+        TypeVariableName.get("T"),
+        TypeVariableName.get("T", Comparable.class),
+        TypeVariableName.get("T").annotated(annotation),
+        TypeVariableName.get("U"),
+        WildcardTypeName.subtypeOf(Object.class),
+        WildcardTypeName.subtypeOf(Object.class).annotated(annotation),
+        WildcardTypeName.subtypeOf(CharSequence.class),
+        WildcardTypeName.supertypeOf(CharSequence.class),
+        WildcardTypeName.supertypeOf(String.class),
+    };
+    for (TypeName a : typeNames) {
+      for (TypeName b : typeNames) {
+        boolean sameClass = a.getClass() == b.getClass();
+        boolean renderedEqual = sameClass && a.toString().equals(b.toString());
+        assertThat(a.equals(b)).named(a + " equals " + b).isEqualTo(renderedEqual);
+        if (renderedEqual) {
+          assertThat(a.hashCode()).named(a + " hashCode").isEqualTo(b.hashCode());
+        }
+      }
+    }
+  }
+
+  @Test public void classLookupsAreCached() throws Exception {
+    assertThat(TypeName.get(String.class)).isSameAs(ClassName.get(String.class));
+    assertThat(TypeName.get(int.class)).isSameAs(TypeName.INT);
+    assertThat(TypeName.get(String[][].class)).isSameAs(TypeName.get(String[][].class));
+    assertThat(ClassName.get(Map.Entry.class)).isSameAs(ClassName.get(Map.Entry.class));
+    assertThat(ClassName.get(Map.Entry.class).toString()).isEqualTo("java.util.Map.Entry");
+  }
+
+  @Test public void genericLookupsAreCached() throws Exception {
+    Method genericArray = getClass().getDeclaredMethod("generic", Enum[].class);
+    Type arrayType = genericArray.getGenericParameterTypes()[0];
+    assertThat(TypeName.get(arrayType)).isSameAs(ArrayTypeName.get((GenericArrayType) arrayType));
+    assertThat(TypeName.get(arrayType).toString()).isEqualTo("E[]");
+
+    Type innerType = getClass().getDeclaredMethod("testGenericInnerLong").getGenericReturnType();
+    ParameterizedTypeName inner = ParameterizedTypeName.get((ParameterizedType) innerType);
+    assertThat(ParameterizedTypeName.get((ParameterizedType) innerType)).isSameAs(inner);
+    assertThat(TypeName.get(innerType)).isSameAs(inner);
+    assertThat(inner.toString()).isEqualTo("com.squareup.javapoet.TypeNameTest.TestGeneric"
+        + "<java.lang.Short>.InnerGeneric<java.lang.Long>");
+  }
+
+  @Test public void concurrentGenericLookupsAgree() throws Exception {
+    final Type type = getClass().getDeclaredMethod("testGenericInnerInt").getGenericReturnType();
+    final TypeName[] results = new TypeName[8];
+    Thread[] threads = new Thread[results.length];
+    for (int i = 0; i < threads.length; i++) {
+      final int index = i;
+      threads[i] = new Thread() {
+        @Override public void run() {
+          results[index] = TypeName.get(type);
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (TypeName result : results) {
+      assertThat(result).isSameAs(TypeName.get(type));
+    }
+  }
+
   private void assertEqualsHashCodeAndToString(TypeName a, TypeName b) {
     assertEquals(a.toString(), b.toString());
     assertThat(a.equals(b)).isTrue();
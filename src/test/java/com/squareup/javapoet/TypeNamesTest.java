@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import com.google.testing.compile.CompilationRule;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static com.google.common.truth.Truth.assertThat;
+import static javax.lang.model.util.ElementFilter.methodsIn;
+
+public final class TypeNamesTest {
+  @Rule public final CompilationRule compilation = new CompilationRule();
+
+  private Elements elements;
+  private final TypeNames typeNames = new TypeNames();
+
+  @Before public void setUp() {
+    elements = compilation.getElements();
+  }
+
+  private TypeElement getElement(Class<?> clazz) {
+    return elements.getTypeElement(clazz.getCanonicalName());
+  }
+
+  abstract static class Generic<K extends Comparable<K>> {
+    abstract <T extends Runnable & Closeable> Map<K, List<? extends T>>[] method(
+        List<? super K> keys, int[][] indices, T value) throws IOException;
+  }
+
+  private ExecutableElement method() {
+    return getOnlyElement(methodsIn(getElement(Generic.class).getEnclosedElements()));
+  }
+
+  @Test public void convertsLikeStaticFactories() {
+    ExecutableElement method = method();
+    assertThat(typeNames.get(method.getReturnType()))
+        .isEqualTo(TypeName.get(method.getReturnType()));
+    for (VariableElement parameter : method.getParameters()) {
+      assertThat(typeNames.get(parameter.asType())).isEqualTo(TypeName.get(parameter.asType()));
+    }
+    for (TypeMirror thrownType : method.getThrownTypes()) {
+      assertThat(typeNames.get(thrownType)).isEqualTo(TypeName.get(thrownType));
+    }
+    TypeParameterElement t = method.getTypeParameters().get(0);
+    assertThat(typeNames.get(t).bounds).isEqualTo(TypeVariableName.get(t).bounds);
+    TypeElement generic = getElement(Generic.class);
+    assertThat(typeNames.get(generic)).isEqualTo(ClassName.get(generic));
+  }
+
+  @Test public void repeatedConversionsHit() {
+    TypeMirror returnType = method().getReturnType();
+    TypeName first = typeNames.get(returnType);
+    long missCount = typeNames.missCount();
+    long hitCount = typeNames.hitCount();
+
+    assertThat(typeNames.get(returnType)).isSameAs(first);
+    assertThat(typeNames.missCount()).isEqualTo(missCount);
+    assertThat(typeNames.hitCount()).isEqualTo(hitCount + 1);
+  }
+
+  @Test public void nestedConversionsAreCached() {
+    ExecutableElement method = method();
+    typeNames.get(method.getReturnType());
+    long missCount = typeNames.missCount();
+
+    TypeParameterElement k = getElement(Generic.class).getTypeParameters().get(0);
+    TypeParameterElement t = method.getTypeParameters().get(0);
+    assertThat(typeNames.get(k).toString()).isEqualTo("K");
+    assertThat(typeNames.get(t).toString()).isEqualTo("T");
+    assertThat(typeNames.get(getElement(Map.class)).toString()).isEqualTo("java.util.Map");
+    assertThat(typeNames.missCount()).isEqualTo(missCount);
+  }
+
+  @Test public void recursiveBounds() {
+    TypeParameterElement k = getElement(Generic.class).getTypeParameters().get(0);
+    TypeVariableName name = typeNames.get(k);
+    assertThat(name.bounds.toString()).isEqualTo("[java.lang.Comparable<K>]");
+    TypeName bound = ((ParameterizedTypeName) name.bounds.get(0)).typeArguments.get(0);
+    assertThat(bound).isSameAs(name);
+  }
+
+  @Test public void overridingSharesCache() {
+    ExecutableElement method = method();
+    MethodSpec expected = MethodSpec.overriding(method).build();
+    assertThat(MethodSpec.overriding(method, typeNames).build()).isEqualTo(expected);
+    long missCount = typeNames.missCount();
+    long hitCount = typeNames.hitCount();
+
+    // One type variable, a return type, three parameters and one exception.
+    assertThat(MethodSpec.overriding(method, typeNames).build()).isEqualTo(expected);
+    assertThat(typeNames.missCount()).isEqualTo(missCount);
+    assertThat(typeNames.hitCount()).isEqualTo(hitCount + 6);
+    assertThat(typeNames.hitRate()).isGreaterThan(0.0);
+  }
+
+  @Test public void equivalentMirrorsShareConversions() {
+    Types types = compilation.getTypes();
+    TypeMirror string = getElement(String.class).asType();
+    TypeElement list = getElement(List.class);
+    TypeMirror first = types.getArrayType(
+        types.getDeclaredType(list, types.getWildcardType(string, null)));
+    TypeMirror second = types.getArrayType(
+        types.getDeclaredType(list, types.getWildcardType(string, null)));
+    assertThat(second).isNotSameAs(first);
+
+    TypeName name = typeNames.get(first);
+    long missCount = typeNames.missCount();
+    long hitCount = typeNames.hitCount();
+    assertThat(typeNames.get(second)).isSameAs(name);
+    assertThat(typeNames.missCount()).isEqualTo(missCount);
+    assertThat(typeNames.hitCount()).isEqualTo(hitCount + 1);
+
+    TypeMirror other = types.getArrayType(
+        types.getDeclaredType(list, types.getWildcardType(null, string)));
+    assertThat(typeNames.get(other).toString())
+        .isEqualTo("java.util.List<? super java.lang.String>[]");
+    assertThat(typeNames.missCount()).isGreaterThan(missCount);
+  }
+}
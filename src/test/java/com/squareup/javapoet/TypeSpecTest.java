@@ -20,7 +20,10 @@ import com.google.testing.compile.CompilationRule;
 import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
@@ -33,7 +36,6 @@ import javax.lang.model.element.Element;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.TypeMirror;
-import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -80,7 +82,17 @@ public final class TypeSpecTest {
         + "    return \"taco\";\n"
         + "  }\n"
         + "}\n");
-    Assert.assertEquals(472949424, taco.hashCode()); // update expected number if source changes
+    // Modifiers hash by ordinal, which varies across JDKs, so don't pin the hash itself.
+    TypeSpec copy = TypeSpec.classBuilder("Taco")
+        .addMethod(MethodSpec.methodBuilder("toString")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.FINAL, Modifier.PUBLIC)
+            .returns(String.class)
+            .addCode("return $S;\n", "taco")
+            .build())
+        .build();
+    assertThat(copy).isEqualTo(taco);
+    assertThat(copy.hashCode()).isEqualTo(taco.hashCode());
   }
 
   @Test public void interestingTypes() throws Exception {
@@ -2229,4 +2241,142 @@ public final class TypeSpecTest {
     assertThat(TypeSpec.enumBuilder(className).addEnumConstant("A").build().name).isEqualTo("Example");
     assertThat(TypeSpec.annotationBuilder(className).build().name).isEqualTo("Example");
   }
+
+  @Test public void fingerprint() throws Exception {
+    TypeSpec taco = TypeSpec.classBuilder("Taco")
+        .addField(FieldSpec.builder(String.class, "name")
+            .initializer("$S", "Carne As\u00e1da")
+            .build())
+        .build();
+    byte[] bytes = taco.toString().getBytes(StandardCharsets.UTF_8);
+    assertThat(taco.fingerprint()).isEqualTo(MessageDigest.getInstance("SHA-256").digest(bytes));
+    assertThat(taco.fingerprint(MessageDigest.getInstance("SHA-1")))
+        .isEqualTo(MessageDigest.getInstance("SHA-1").digest(bytes));
+    assertThat(taco.toBuilder().addModifiers(Modifier.PUBLIC).build().fingerprint())
+        .isNotEqualTo(taco.fingerprint());
+  }
+
+  @Test public void equalsComparesStructure() {
+    TypeSpec a = TypeSpec.classBuilder("Taco")
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .addField(String.class, "meat")
+        .addMethod(MethodSpec.methodBuilder("eat").addStatement("$T.eat()", Object.class).build())
+        .addType(TypeSpec.classBuilder("Topping").build())
+        .build();
+    TypeSpec b = TypeSpec.classBuilder("Taco")
+        .addModifiers(Modifier.FINAL, Modifier.PUBLIC)
+        .addField(String.class, "meat")
+        .addMethod(MethodSpec.methodBuilder("eat").addStatement("java.lang.Object.eat()").build())
+        .addType(TypeSpec.classBuilder("Topping").build())
+        .build();
+    assertThat(a.equals(b)).isTrue();
+    assertThat(a.hashCode()).isEqualTo(b.hashCode());
+    assertThat(a.toBuilder().build()).isEqualTo(a);
+
+    TypeSpec c = a.toBuilder().addJavadoc("Delicious.\n").build();
+    assertThat(a.equals(c)).isFalse();
+    TypeSpec d = a.toBuilder().addType(TypeSpec.classBuilder("Shell").build()).build();
+    assertThat(a.equals(d)).isFalse();
+  }
+
+  @Test public void equalsComparesEnumConstantsInOrder() {
+    TypeSpec a = TypeSpec.enumBuilder("Roshambo")
+        .addEnumConstant("ROCK")
+        .addEnumConstant("PAPER")
+        .build();
+    TypeSpec b = TypeSpec.enumBuilder("Roshambo")
+        .addEnumConstant("PAPER")
+        .addEnumConstant("ROCK")
+        .build();
+    assertThat(a.toString().equals(b.toString())).isFalse();
+    assertThat(a.equals(b)).isFalse();
+  }
+
+  @Test public void equalsIgnoresOriginatingElements() {
+    Element element = Mockito.mock(Element.class);
+    TypeSpec a = TypeSpec.classBuilder("Taco").build();
+    TypeSpec b = TypeSpec.classBuilder("Taco").addOriginatingElement(element).build();
+    assertThat(a.equals(b)).isTrue();
+    assertThat(a.hashCode()).isEqualTo(b.hashCode());
+  }
+
+  @Test public void toBuilderSharesMembers() {
+    TypeSpec.Builder builder = TypeSpec.classBuilder("Taco");
+    for (int i = 0; i < 10; i++) {
+      builder.addMethod(MethodSpec.methodBuilder("method" + i).build());
+    }
+    TypeSpec taco = builder.build();
+
+    TypeSpec unchanged = taco.toBuilder().build();
+    assertThat(unchanged.methodSpecs).isEqualTo(taco.methodSpecs);
+    assertThat(unchanged.javadoc).isSameAs(taco.javadoc);
+
+    MethodSpec extra = MethodSpec.methodBuilder("extra").build();
+    TypeSpec a = taco.toBuilder().addMethod(extra).build();
+    TypeSpec b = taco.toBuilder().addField(int.class, "b").addMethod(extra).build();
+    TypeSpec c = a.toBuilder().addMethod(extra).build();
+    assertThat(taco.methodSpecs).hasSize(10);
+    assertThat(a.methodSpecs).hasSize(11);
+    assertThat(b.methodSpecs).hasSize(11);
+    assertThat(c.methodSpecs).hasSize(12);
+    assertThat(a.methodSpecs.get(10)).isSameAs(extra);
+    assertThat(c.methodSpecs.subList(0, 10)).isEqualTo(taco.methodSpecs);
+  }
+
+  @Test public void originatingElementsIncludeNestedTypes() {
+    Element outer = Mockito.mock(Element.class);
+    Element shared = Mockito.mock(Element.class);
+    Element inner = Mockito.mock(Element.class);
+    Element innermost = Mockito.mock(Element.class);
+
+    TypeSpec innermostType = TypeSpec.classBuilder("Innermost")
+        .addOriginatingElement(innermost)
+        .addOriginatingElement(shared)
+        .build();
+    TypeSpec innerType = TypeSpec.classBuilder("Inner")
+        .addOriginatingElement(inner)
+        .addOriginatingElement(shared)
+        .addType(innermostType)
+        .build();
+    TypeSpec outerType = TypeSpec.classBuilder("Outer")
+        .addOriginatingElement(outer)
+        .addType(innerType)
+        .addType(TypeSpec.classBuilder("Empty").build())
+        .build();
+
+    assertThat(outerType.originatingElements)
+        .containsExactly(outer, inner, shared, innermost).inOrder();
+    assertThat(innerType.originatingElements).containsExactly(inner, shared, innermost).inOrder();
+    assertThat(innermostType.originatingElements).containsExactly(innermost, shared).inOrder();
+  }
+
+  @Test public void originatingElementsOfDeeplyNestedTypes() {
+    List<Element> elements = new ArrayList<>();
+    TypeSpec type = null;
+    for (int depth = 0; depth < 8; depth++) {
+      TypeSpec.Builder builder = TypeSpec.classBuilder("Level" + depth)
+          .addModifiers(Modifier.STATIC);
+      for (int i = 0; i < 100; i++) {
+        Element element = Mockito.mock(Element.class);
+        elements.add(element);
+        builder.addOriginatingElement(element);
+      }
+      if (type != null) {
+        builder.addType(type);
+      }
+      type = builder.build();
+    }
+    assertThat(type.originatingElements).hasSize(800);
+    assertThat(type.originatingElements).containsExactlyElementsIn(elements);
+  }
+
+  @Test public void emptyMembersAreShared() {
+    TypeSpec a = TypeSpec.classBuilder("A").build();
+    TypeSpec b = TypeSpec.classBuilder("B").addModifiers(Modifier.PUBLIC).build();
+    assertThat(a.javadoc).isSameAs(b.javadoc);
+    assertThat(a.staticBlock).isSameAs(b.initializerBlock);
+    assertThat(a.fieldSpecs).isSameAs(b.methodSpecs);
+    assertThat(a.enumConstants).isSameAs(b.enumConstants);
+    assertThat(b.modifiers).containsExactly(Modifier.PUBLIC);
+  }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.javapoet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public final class Utf8WriterTest {
+  private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+  private int writeCount;
+  private final WritableByteChannel channel = new WritableByteChannel() {
+    final WritableByteChannel delegate = Channels.newChannel(bytes);
+    boolean open = true;
+
+    @Override public int write(ByteBuffer source) throws IOException {
+      writeCount++;
+      return delegate.write(source);
+    }
+
+    @Override public boolean isOpen() {
+      return open;
+    }
+
+    @Override public void close() {
+      open = false;
+    }
+  };
+
+  @Test public void ascii() throws IOException {
+    Utf8Writer writer = new Utf8Writer(channel);
+    writer.append("class Test {\n");
+    writer.append("  int a;\n", 2, 9);
+    writer.append('}');
+    writer.close();
+    assertThat(bytes.toString("UTF-8")).isEqualTo("class Test {\nint a;\n}");
+    assertThat(writeCount).isEqualTo(1);
+    assertThat(channel.isOpen()).isFalse();
+  }
+
+  @Test public void matchesStringGetBytes() throws IOException {
+    String s = "a\u00e9\u0800\uffff\ud83c\udf7a\ud83c-\udf7a\ud83c";
+    for (int bufferSize = 4; bufferSize < 12; bufferSize++) {
+      bytes.reset();
+      Utf8Writer writer = new Utf8Writer(channel, bufferSize);
+      for (int i = 0; i < s.length(); i++) {
+        writer.append(s, i, i + 1); // Splits the surrogate pair across appends.
+      }
+      writer.close();
+      assertThat(bytes.toByteArray()).isEqualTo(s.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test public void bufferIsReused() throws IOException {
+    Utf8Writer writer = new Utf8Writer(channel, 16);
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      writer.append("0123456789");
+      expected.append("0123456789");
+    }
+    writer.close();
+    assertThat(bytes.toString("UTF-8")).isEqualTo(expected.toString());
+    assertThat(writeCount).isEqualTo(63);
+  }
+
+  @Test public void writeAfterClose() throws IOException {
+    Utf8Writer writer = new Utf8Writer(channel);
+    writer.close();
+    try {
+      writer.append("a");
+      fail();
+    } catch (IOException expected) {
+      assertThat(expected).hasMessage("closed");
+    }
+  }
+}